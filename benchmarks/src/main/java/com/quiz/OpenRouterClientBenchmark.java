@@ -0,0 +1,43 @@
+package com.quiz;
+
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OpenRouterClientBenchmark {
+    private OpenRouterClient client;
+    private ChatPrompt prompt;
+    private byte[] responseBody;
+    private Buffer requestSink;
+
+    @Setup
+    public void setUp() {
+        client = new OpenRouterClient("benchmark");
+        prompt = new ChatPrompt(QuestionGenerator.SYSTEM_MESSAGE, String.format(QuestionGenerator.QUESTION_PROMPT_TEMPLATE,
+            DifficultyLevel.MEDIUM.getDisplayName().toUpperCase(), "Design Patterns and Architecture"), 250);
+        responseBody = RecordedData.CHAT_COMPLETION_JSON.getBytes(StandardCharsets.UTF_8);
+        requestSink = new Buffer();
+    }
+
+    // Encodes the request and writes it out the way OkHttp would, into a reused buffer
+    @Benchmark
+    public long encodeRequest() throws Exception {
+        requestSink.clear();
+        client.encodeRequestBody(prompt, false).writeTo(requestSink);
+        return requestSink.size();
+    }
+
+    @Benchmark
+    public String decodeResponse() throws Exception {
+        return client.decodeCompletion(new ByteArrayInputStream(responseBody), null);
+    }
+}
@@ -0,0 +1,83 @@
+package com.quiz;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuestionGeneratorBenchmark {
+    private static final int BATCH_SIZE = 5;
+
+    private String questionText;
+    private String batchReply;
+    private List<String> oneTopic;
+    private List<String> batchTopics;
+    private TopicScheduler deckScheduler;
+    private TopicScheduler weightedScheduler;
+
+    // Only static helpers are measured: a QuestionGenerator instance would start the router, coalescer and
+    // scheduler threads and open the user's question bank
+    @Setup
+    public void setUp() {
+        questionText = RecordedData.QUESTION_TEXT;
+        StringBuilder reply = new StringBuilder();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            reply.append("Topic: ").append(i + 1).append('\n').append(questionText.trim()).append("\n\n");
+        }
+        batchReply = reply.toString();
+        oneTopic = List.of(TopicCatalog.getDefault().get(0));
+        batchTopics = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batchTopics.add(TopicCatalog.getDefault().get(i));
+        }
+        deckScheduler = new TopicScheduler(TopicCatalog.getDefault(), TopicScheduler.Mode.DECK);
+        weightedScheduler = new TopicScheduler(TopicCatalog.getDefault(), TopicScheduler.Mode.WEIGHTED);
+    }
+
+    @Benchmark
+    public Question parseResponse() throws Exception {
+        return QuestionGenerator.parseResponse(questionText);
+    }
+
+    // Topics are completed straight away so the in-flight set stays empty, as it mostly is in a quiz
+    @Benchmark
+    public String nextTopicDeck() {
+        String topic = deckScheduler.next();
+        deckScheduler.complete(topic);
+        return topic;
+    }
+
+    @Benchmark
+    public String nextTopicWeighted() {
+        String topic = weightedScheduler.next();
+        weightedScheduler.complete(topic);
+        return topic;
+    }
+
+    // A batch reply is split into numbered blocks and each block parsed, as the coalescer does
+    @Benchmark
+    public List<Question> parseBatchReply() throws Exception {
+        List<Question> questions = new ArrayList<>(BATCH_SIZE);
+        for (String block : QuestionGenerator.splitNumberedBlocks(batchReply, BATCH_SIZE).values()) {
+            questions.add(QuestionGenerator.parseResponse(block));
+        }
+        return questions;
+    }
+
+    @Benchmark
+    public ChatPrompt buildPrompt() {
+        return QuestionGenerator.buildPrompt(DifficultyLevel.MEDIUM, oneTopic, 1);
+    }
+
+    @Benchmark
+    public ChatPrompt buildBatchPrompt() {
+        return QuestionGenerator.buildPrompt(DifficultyLevel.MEDIUM, batchTopics, 1);
+    }
+}
@@ -0,0 +1,26 @@
+package com.quiz;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Recorded OpenRouter traffic bundled with the benchmarks, so every run measures the same input
+final class RecordedData {
+    static final String CHAT_COMPLETION_JSON = load("/recorded/chat-completion.json");
+    static final String QUESTION_TEXT = load("/recorded/question.txt");
+
+    private RecordedData() {
+    }
+
+    private static String load(String resource) {
+        try (InputStream in = RecordedData.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing recorded data: " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.quiz;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Local stand-in for the OpenRouter chat completions API, so everything around OpenRouterClient can
+// be measured offline and repeatably. It replays exchanges saved by ExchangeRecorder (plain and
+// streamed requests each cycle through their own recordings) or, without recordings, answers with
+// generated questions in the format QuestionGenerator expects. Latency, server errors, 429s and
+// truncated bodies are injected at configurable rates; each request draws its own random numbers from
+// the seed and its sequence number, so a run can be reproduced exactly.
+// Lives in the benchmarks module so it stays out of the app jar. Run with:
+// java -cp target/benchmarks.jar com.quiz.StubOpenRouterServer [port] [recordDir], then start the quiz
+// with -Dquiz.api.baseUrl=http://127.0.0.1:<port>. Options come from -Dquiz.stub.<name>=<value>.
+public class StubOpenRouterServer {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern QUESTION_COUNT = Pattern.compile("^Generate (\\d+) ");
+    // Recording metadata files, as ExchangeRecorder names them
+    private static final String PROPERTIES_SUFFIX = ".properties";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Options options;
+    private final List<Recording> completions = new ArrayList<>();
+    private final List<Recording> streams = new ArrayList<>();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private StubOpenRouterServer(HttpServer server, Options options, List<Recording> recordings) {
+        this.server = server;
+        this.options = options;
+        for (Recording recording : recordings) {
+            if (recording.getStatus() == 200) {
+                (recording.isStream() ? streams : completions).add(recording);
+            }
+        }
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-openrouter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/chat/completions", this::handleCompletion);
+        server.createContext("/", this::handleOther);
+    }
+
+    // Port 0 picks a free port
+    public static StubOpenRouterServer start(int port, Options options) throws IOException {
+        List<Recording> recordings = options.recordDir != null
+            ? loadRecordings(Paths.get(options.recordDir))
+            : new ArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        StubOpenRouterServer stub = new StubOpenRouterServer(server, options, recordings);
+        server.start();
+        return stub;
+    }
+
+    // Value for -Dquiz.api.baseUrl
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleOther(HttpExchange exchange) throws IOException {
+        // Preconnects and anything else just get an empty answer
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+    }
+
+    private void handleCompletion(HttpExchange exchange) throws IOException {
+        long sequence = requestCount.getAndIncrement();
+        // Not seed + sequence * golden gamma: that would only shift one request's stream into the next
+        SplittableRandom random = new SplittableRandom((options.seed * 1_000_003L + sequence) * 0xBF58476D1CE4E5B9L);
+        try {
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            boolean stream = request.path("stream").asBoolean(false);
+
+            double fault = random.nextDouble();
+            if (fault < options.rateLimitRate) {
+                sleep(sampleLatency(random, -1));
+                exchange.getResponseHeaders().set("Retry-After", Long.toString(options.retryAfterSeconds));
+                sendError(exchange, 429, "Rate limit exceeded");
+                return;
+            }
+            if (fault < options.rateLimitRate + options.errorRate) {
+                sleep(sampleLatency(random, -1));
+                sendError(exchange, 500, "Internal server error");
+                return;
+            }
+            boolean truncate = random.nextDouble() < options.truncateRate;
+
+            Recording recording = pickRecording(stream, sequence);
+            if (stream) {
+                List<String> events = recording != null
+                    ? recordedEvents(recording)
+                    : syntheticEvents(userMessage(request), random);
+                long firstByte = sampleLatency(random, recording != null ? recording.getFirstByteMillis() : -1);
+                long rest = recording != null && options.recordedLatency
+                    ? Math.max(0, recording.getTotalMillis() - recording.getFirstByteMillis())
+                    : options.chunkDelayMillis * events.size();
+                sendStream(exchange, events, firstByte, rest, truncate);
+            } else {
+                byte[] body = recording != null
+                    ? recording.getBody()
+                    : syntheticCompletion(userMessage(request), random);
+                sleep(sampleLatency(random, recording != null ? recording.getTotalMillis() : -1));
+                sendBody(exchange, 200, recording != null ? recording.getContentType() : "application/json", body, truncate);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Usually the client hung up first, e.g. a cancelled hedge
+            exchange.close();
+        }
+    }
+
+    private Recording pickRecording(boolean stream, long sequence) {
+        List<Recording> candidates = stream ? streams : completions;
+        return candidates.isEmpty() ? null : candidates.get((int) (sequence % candidates.size()));
+    }
+
+    // Log-normal around the configured median, or the recorded time when replaying recorded latency
+    private long sampleLatency(SplittableRandom random, long recordedMillis) {
+        if (options.recordedLatency && recordedMillis >= 0) {
+            return recordedMillis;
+        }
+        if (options.latencySpread <= 0) {
+            return options.latencyMillis;
+        }
+        double gaussian = gaussian(random);
+        return (long) (options.latencyMillis * Math.exp(options.latencySpread * gaussian));
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller; SplittableRandom has no nextGaussian
+        double u = 1.0 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * v);
+    }
+
+    private void sendStream(HttpExchange exchange, List<String> events, long firstByteMillis, long restMillis,
+                            boolean truncate) throws IOException {
+        sleep(firstByteMillis);
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        // A truncated stream stops halfway, without the final usage chunk or [DONE]
+        int count = truncate ? events.size() / 2 : events.size();
+        long gap = events.isEmpty() ? 0 : restMillis / events.size();
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    sleep(gap);
+                }
+                out.write(("data: " + events.get(i) + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            if (!truncate) {
+                out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    // A truncated body announces its full length and stops halfway, so the client sees the connection end early
+    private static void sendBody(HttpExchange exchange, int status, String contentType, byte[] body,
+                                 boolean truncate) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body, 0, truncate ? body.length / 2 : body.length);
+        out.flush();
+        exchange.close();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ObjectNode error = MAPPER.createObjectNode();
+        error.putObject("error").put("message", message).put("code", status);
+        sendBody(exchange, status, "application/json", MAPPER.writeValueAsBytes(error), false);
+    }
+
+    private static List<String> recordedEvents(Recording recording) {
+        List<String> events = new ArrayList<>();
+        for (String line : new String(recording.getBody(), StandardCharsets.UTF_8).split("\n")) {
+            if (line.startsWith("data:")) {
+                String data = line.substring(5).trim();
+                if (!data.equals("[DONE]")) {
+                    events.add(data);
+                }
+            }
+        }
+        return events;
+    }
+
+    private static String userMessage(JsonNode request) {
+        String content = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                content = message.path("content").asText();
+            }
+        }
+        return content;
+    }
+
+    private static byte[] syntheticCompletion(String userMessage, SplittableRandom random) throws IOException {
+        String content = syntheticQuestions(userMessage, random);
+        ObjectNode response = MAPPER.createObjectNode();
+        response.putArray("choices").addObject().putObject("message")
+            .put("role", "assistant")
+            .put("content", content);
+        putUsage(response, userMessage, content);
+        return MAPPER.writeValueAsBytes(response);
+    }
+
+    // One event per line of the generated reply, then a final event with the usage
+    private static List<String> syntheticEvents(String userMessage, SplittableRandom random) throws IOException {
+        String content = syntheticQuestions(userMessage, random);
+        List<String> events = new ArrayList<>();
+        for (String line : content.split("(?<=\n)")) {
+            ObjectNode chunk = MAPPER.createObjectNode();
+            chunk.putArray("choices").addObject().putObject("delta").put("content", line);
+            events.add(MAPPER.writeValueAsString(chunk));
+        }
+        ObjectNode usage = MAPPER.createObjectNode();
+        usage.putArray("choices");
+        putUsage(usage, userMessage, content);
+        events.add(MAPPER.writeValueAsString(usage));
+        return events;
+    }
+
+    private static void putUsage(ObjectNode response, String userMessage, String content) {
+        // Rough provider-like counts, about four characters per token
+        response.putObject("usage")
+            .put("prompt_tokens", (QuestionGenerator.SYSTEM_MESSAGE.length() + userMessage.length()) / 4)
+            .put("completion_tokens", content.length() / 4);
+    }
+
+    // As many questions as a batch prompt asks for
+    private static String syntheticQuestions(String userMessage, SplittableRandom random) {
+        Matcher matcher = QUESTION_COUNT.matcher(userMessage);
+        int count = matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+        StringBuilder content = new StringBuilder();
+        for (int q = 0; q < count; q++) {
+            if (q > 0) {
+                content.append("\n\n");
+            }
+            if (count > 1) {
+                content.append("Topic: ").append(q + 1).append('\n');
+            }
+            content.append("Q: Which statement about ").append(randomWords(random, 6)).append(" is true?\n");
+            for (int option = 0; option < 4; option++) {
+                content.append((char) ('A' + option)).append(") ").append(randomWords(random, 4)).append('\n');
+            }
+            content.append("Correct: ").append((char) ('A' + random.nextInt(4)));
+        }
+        return content.toString();
+    }
+
+    // Made-up words, so generated questions share no more text than the template
+    private static String randomWords(SplittableRandom random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                words.append(' ');
+            }
+            int length = 4 + random.nextInt(6);
+            for (int c = 0; c < length; c++) {
+                words.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return words.toString();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class Options {
+        private String recordDir = System.getProperty("quiz.stub.recordDir");
+        private long latencyMillis = Long.getLong("quiz.stub.latencyMillis", 800);
+        private double latencySpread = Double.parseDouble(System.getProperty("quiz.stub.latencySpread", "0.5"));
+        private boolean recordedLatency = Boolean.getBoolean("quiz.stub.recordedLatency");
+        private long chunkDelayMillis = Long.getLong("quiz.stub.chunkDelayMillis", 20);
+        private double errorRate = Double.parseDouble(System.getProperty("quiz.stub.errorRate", "0"));
+        private double rateLimitRate = Double.parseDouble(System.getProperty("quiz.stub.rateLimitRate", "0"));
+        private long retryAfterSeconds = Long.getLong("quiz.stub.retryAfterSeconds", 1);
+        private double truncateRate = Double.parseDouble(System.getProperty("quiz.stub.truncateRate", "0"));
+        private long seed = Long.getLong("quiz.stub.seed", 42);
+
+        // Directory written by ExchangeRecorder; without one every reply is generated
+        public Options recordDir(String recordDir) {
+            this.recordDir = recordDir;
+            return this;
+        }
+
+        // Median time to the first byte; spread is the sigma of the log-normal, 0 for a fixed delay
+        public Options latency(long medianMillis, double spread) {
+            this.latencyMillis = medianMillis;
+            this.latencySpread = spread;
+            return this;
+        }
+
+        // Replay the timings saved with each recording instead of sampling them
+        public Options recordedLatency(boolean recordedLatency) {
+            this.recordedLatency = recordedLatency;
+            return this;
+        }
+
+        // Gap between generated stream events
+        public Options chunkDelay(long millis) {
+            this.chunkDelayMillis = millis;
+            return this;
+        }
+
+        public Options errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        public Options rateLimitRate(double rateLimitRate, long retryAfterSeconds) {
+            this.rateLimitRate = rateLimitRate;
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        public Options truncateRate(double truncateRate) {
+            this.truncateRate = truncateRate;
+            return this;
+        }
+
+        public Options seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+    }
+
+    // Exchanges ExchangeRecorder saved in the directory, in the order they were made
+    private static List<Recording> loadRecordings(Path directory) throws IOException {
+        List<Recording> recordings = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return recordings;
+        }
+        List<Path> metaFiles = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + PROPERTIES_SUFFIX)) {
+            files.forEach(metaFiles::add);
+        }
+        metaFiles.sort(null);
+        for (Path metaFile : metaFiles) {
+            String name = metaFile.getFileName().toString();
+            String id = name.substring(0, name.length() - PROPERTIES_SUFFIX.length());
+            Path responseFile = directory.resolve(id + ".response");
+            if (!Files.exists(responseFile)) {
+                continue;
+            }
+            Properties meta = new Properties();
+            try (InputStream in = Files.newInputStream(metaFile)) {
+                meta.load(in);
+            }
+            recordings.add(new Recording(meta, Files.readAllBytes(responseFile)));
+        }
+        return recordings;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        Options options = new Options();
+        if (args.length > 1) {
+            options.recordDir(args[1]);
+        }
+        StubOpenRouterServer stub = start(port, options);
+        System.out.println("Stub OpenRouter listening on " + stub.getBaseUrl()
+            + " (" + stub.completions.size() + " recorded completions, " + stub.streams.size() + " recorded streams)");
+        System.out.println("Start the quiz with -Dquiz.api.baseUrl=" + stub.getBaseUrl());
+    }
+
+    // One saved exchange: the response as the client read it, and how long it took
+    static class Recording {
+        private final int status;
+        private final String contentType;
+        private final boolean stream;
+        private final long firstByteMillis;
+        private final long totalMillis;
+        private final byte[] body;
+
+        Recording(Properties meta, byte[] body) {
+            this.status = Integer.parseInt(meta.getProperty("status", "200"));
+            this.contentType = meta.getProperty("contentType", "application/json");
+            this.stream = Boolean.parseBoolean(meta.getProperty("stream"));
+            this.firstByteMillis = Long.parseLong(meta.getProperty("firstByteMillis", "0"));
+            this.totalMillis = Long.parseLong(meta.getProperty("totalMillis", "0"));
+            this.body = body;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        boolean isStream() {
+            return stream;
+        }
+
+        long getFirstByteMillis() {
+            return firstByteMillis;
+        }
+
+        long getTotalMillis() {
+            return totalMillis;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.quiz;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Append-only history of every answered question, stored one column per file: a row is one attempt
+// (time, user, topic, difficulty, answer, correctness, response time) and each column file holds that
+// field for every row as fixed-width big-endian values. Users and topics are dictionary-encoded as int ids.
+// Queries map only the columns they need and run tight loops over them, so aggregating millions of
+// attempts takes milliseconds and never builds an object per row. Appends are buffered and written
+// every FLUSH_ROWS rows, when a session ends, and at exit.
+public class AttemptHistory {
+    private static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".se-quiz", "history");
+    private static final int FLUSH_ROWS = 1024;
+
+    private static final int TIME = 0;
+    private static final int USER = 1;
+    private static final int TOPIC = 2;
+    private static final int DIFFICULTY = 3;
+    private static final int ANSWER = 4;
+    private static final int CORRECT = 5;
+    private static final int RESPONSE_MILLIS = 6;
+    private static final String[] COLUMN_NAMES = {"time", "user", "topic", "difficulty", "answer", "correct", "response-millis"};
+    private static final int[] COLUMN_WIDTHS = {8, 4, 4, 1, 1, 1, 4};
+
+    private static AttemptHistory defaultHistory;
+
+    private final FileChannel[] channels = new FileChannel[COLUMN_NAMES.length];
+    private final ByteBuffer[] pending = new ByteBuffer[COLUMN_NAMES.length];
+    private final MappedByteBuffer[] mapped = new MappedByteBuffer[COLUMN_NAMES.length];
+    private final Dictionary users;
+    private final Dictionary topics;
+    private long rows;
+    private int pendingRows = 0;
+
+    public AttemptHistory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        users = new Dictionary(directory.resolve("users.dict"));
+        topics = new Dictionary(directory.resolve("topics.dict"));
+        long committed = Long.MAX_VALUE;
+        for (int c = 0; c < channels.length; c++) {
+            channels[c] = FileChannel.open(directory.resolve(COLUMN_NAMES[c] + ".col"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            pending[c] = ByteBuffer.allocate(FLUSH_ROWS * COLUMN_WIDTHS[c]);
+            committed = Math.min(committed, channels[c].size() / COLUMN_WIDTHS[c]);
+        }
+        // A crash mid-flush can leave some columns longer than others; drop the incomplete rows
+        for (int c = 0; c < channels.length; c++) {
+            channels[c].truncate(committed * COLUMN_WIDTHS[c]);
+        }
+        rows = committed;
+    }
+
+    // Shared history in the user's home directory, or null if it cannot be opened
+    public static synchronized AttemptHistory getDefault() {
+        if (defaultHistory == null) {
+            try {
+                defaultHistory = new AttemptHistory(DEFAULT_DIRECTORY);
+                AttemptHistory history = defaultHistory;
+                Runtime.getRuntime().addShutdownHook(new Thread(history::flushQuietly, "attempt-history-flush"));
+            } catch (IOException e) {
+                System.out.println("Attempt history unavailable: " + e.getMessage());
+                return null;
+            }
+        }
+        return defaultHistory;
+    }
+
+    // answer is the chosen option, or -1 if the question was not answered; topic may be null
+    public synchronized void append(String user, String topic, DifficultyLevel difficulty, int answer,
+                                    boolean correct, int responseMillis) throws IOException {
+        pending[TIME].putLong(System.currentTimeMillis());
+        pending[USER].putInt(users.idOf(user));
+        pending[TOPIC].putInt(topic != null ? topics.idOf(topic) : -1);
+        pending[DIFFICULTY].put((byte) difficulty.ordinal());
+        pending[ANSWER].put((byte) answer);
+        pending[CORRECT].put((byte) (correct ? 1 : 0));
+        pending[RESPONSE_MILLIS].putInt(responseMillis);
+        if (++pendingRows == FLUSH_ROWS) {
+            flush();
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        if (pendingRows == 0) {
+            return;
+        }
+        // Every column is written before the row count moves, so readers never see half a row
+        for (int c = 0; c < channels.length; c++) {
+            ByteBuffer buffer = pending[c];
+            buffer.flip();
+            long position = rows * COLUMN_WIDTHS[c];
+            while (buffer.hasRemaining()) {
+                position += channels[c].write(buffer, position);
+            }
+            buffer.clear();
+        }
+        rows += pendingRows;
+        pendingRows = 0;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.out.println("Failed to save attempt history: " + e.getMessage());
+        }
+    }
+
+    public synchronized long size() {
+        return rows + pendingRows;
+    }
+
+    // Accuracy and response time per topic, optionally for a single difficulty (null for all)
+    public synchronized Map<String, Aggregate> byTopic(DifficultyLevel difficulty) throws IOException {
+        flush();
+        int n = (int) rows;
+        IntBuffer topicColumn = column(TOPIC).asIntBuffer();
+        ByteBuffer difficultyColumn = column(DIFFICULTY);
+        ByteBuffer correctColumn = column(CORRECT);
+        IntBuffer responseColumn = column(RESPONSE_MILLIS).asIntBuffer();
+
+        int keys = topics.size();
+        long[] attempts = new long[keys];
+        long[] correct = new long[keys];
+        long[] responseMillis = new long[keys];
+        int only = difficulty != null ? difficulty.ordinal() : -1;
+        for (int i = 0; i < n; i++) {
+            int topic = topicColumn.get(i);
+            if (topic < 0 || (only >= 0 && difficultyColumn.get(i) != only)) {
+                continue;
+            }
+            attempts[topic]++;
+            correct[topic] += correctColumn.get(i);
+            responseMillis[topic] += responseColumn.get(i);
+        }
+
+        Map<String, Aggregate> result = new LinkedHashMap<>();
+        for (int t = 0; t < keys; t++) {
+            if (attempts[t] > 0) {
+                result.put(topics.nameOf(t), new Aggregate(attempts[t], correct[t], responseMillis[t]));
+            }
+        }
+        return result;
+    }
+
+    // Accuracy and response time per difficulty level, to check that harder questions really are harder
+    public synchronized Map<DifficultyLevel, Aggregate> byDifficulty() throws IOException {
+        flush();
+        int n = (int) rows;
+        ByteBuffer difficultyColumn = column(DIFFICULTY);
+        ByteBuffer correctColumn = column(CORRECT);
+        IntBuffer responseColumn = column(RESPONSE_MILLIS).asIntBuffer();
+
+        DifficultyLevel[] levels = DifficultyLevel.values();
+        long[] attempts = new long[levels.length];
+        long[] correct = new long[levels.length];
+        long[] responseMillis = new long[levels.length];
+        for (int i = 0; i < n; i++) {
+            int level = difficultyColumn.get(i);
+            attempts[level]++;
+            correct[level] += correctColumn.get(i);
+            responseMillis[level] += responseColumn.get(i);
+        }
+
+        Map<DifficultyLevel, Aggregate> result = new EnumMap<>(DifficultyLevel.class);
+        for (int l = 0; l < levels.length; l++) {
+            if (attempts[l] > 0) {
+                result.put(levels[l], new Aggregate(attempts[l], correct[l], responseMillis[l]));
+            }
+        }
+        return result;
+    }
+
+    // The user's attempts in order, in consecutive windows of windowSize attempts, oldest first
+    public synchronized List<Aggregate> userTrend(String user, int windowSize) throws IOException {
+        flush();
+        List<Aggregate> trend = new ArrayList<>();
+        int id = users.find(user);
+        if (id < 0) {
+            return trend;
+        }
+        int n = (int) rows;
+        IntBuffer userColumn = column(USER).asIntBuffer();
+        ByteBuffer correctColumn = column(CORRECT);
+        IntBuffer responseColumn = column(RESPONSE_MILLIS).asIntBuffer();
+
+        long attempts = 0;
+        long correct = 0;
+        long responseMillis = 0;
+        for (int i = 0; i < n; i++) {
+            if (userColumn.get(i) != id) {
+                continue;
+            }
+            attempts++;
+            correct += correctColumn.get(i);
+            responseMillis += responseColumn.get(i);
+            if (attempts == windowSize) {
+                trend.add(new Aggregate(attempts, correct, responseMillis));
+                attempts = correct = responseMillis = 0;
+            }
+        }
+        if (attempts > 0) {
+            trend.add(new Aggregate(attempts, correct, responseMillis));
+        }
+        return trend;
+    }
+
+    // Read-only view of the committed rows of a column; columns only grow, so a mapping is reused until
+    // rows have been added past its end
+    private ByteBuffer column(int c) throws IOException {
+        long bytes = rows * COLUMN_WIDTHS[c];
+        if (mapped[c] == null || mapped[c].capacity() < bytes) {
+            mapped[c] = channels[c].map(FileChannel.MapMode.READ_ONLY, 0, bytes);
+        }
+        ByteBuffer view = mapped[c].duplicate();
+        view.limit((int) bytes);
+        return view;
+    }
+
+    public static class Aggregate {
+        private final long attempts;
+        private final long correct;
+        private final long totalResponseMillis;
+
+        Aggregate(long attempts, long correct, long totalResponseMillis) {
+            this.attempts = attempts;
+            this.correct = correct;
+            this.totalResponseMillis = totalResponseMillis;
+        }
+
+        public long getAttempts() {
+            return attempts;
+        }
+
+        public long getCorrect() {
+            return correct;
+        }
+
+        public double getAccuracy() {
+            return attempts == 0 ? 0.0 : (double) correct / attempts;
+        }
+
+        public double getMeanResponseMillis() {
+            return attempts == 0 ? 0.0 : (double) totalResponseMillis / attempts;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d attempts, %.0f%% correct, %.1f s average", attempts, getAccuracy() * 100,
+                getMeanResponseMillis() / 1000);
+        }
+    }
+
+    // Strings stored once in a text file, one per line; the line number is the id
+    private static class Dictionary {
+        private final Path file;
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        Dictionary(Path file) throws IOException {
+            this.file = file;
+            if (Files.exists(file)) {
+                for (String name : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    ids.putIfAbsent(name, names.size());
+                    names.add(name);
+                }
+            }
+        }
+
+        int idOf(String name) throws IOException {
+            String key = name.replace('\n', ' ').replace('\r', ' ');
+            Integer id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            // Written straight away: a row must never reference an id missing from the file
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(key);
+                writer.write('\n');
+            }
+            ids.put(key, names.size());
+            names.add(key);
+            return names.size() - 1;
+        }
+
+        int find(String name) {
+            Integer id = ids.get(name.replace('\n', ' ').replace('\r', ' '));
+            return id != null ? id : -1;
+        }
+
+        String nameOf(int id) {
+            return names.get(id);
+        }
+
+        int size() {
+            return names.size();
+        }
+    }
+}
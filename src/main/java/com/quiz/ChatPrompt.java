@@ -0,0 +1,35 @@
+package com.quiz;
+
+// One chat completion request: an optional system message, the user message and the output cap.
+// Keeping the static instructions in the system message gives every request the same prefix,
+// which lets the provider reuse its prompt cache across requests.
+public class ChatPrompt {
+    private final String systemMessage;
+    private final String userMessage;
+    private final int maxTokens;
+
+    public ChatPrompt(String systemMessage, String userMessage, int maxTokens) {
+        this.systemMessage = systemMessage;
+        this.userMessage = userMessage;
+        this.maxTokens = maxTokens;
+    }
+
+    // May be null, in which case only the user message is sent
+    public String getSystemMessage() {
+        return systemMessage;
+    }
+
+    public String getUserMessage() {
+        return userMessage;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    // Rough prompt size for budgeting before the provider reports the real count (about 4 chars a token)
+    public int estimatePromptTokens() {
+        int chars = userMessage.length() + (systemMessage != null ? systemMessage.length() : 0);
+        return chars / 4 + 1;
+    }
+}
@@ -0,0 +1,84 @@
+package com.quiz;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Encodes chat completion requests from pre-built UTF-8 templates. The model parameters and each
+// distinct system message are encoded once and shared by all clients; each request only escapes the
+// user message and streams template + message + output cap straight into the socket.
+// max_tokens follows the messages so the bytes up to the user message stay identical across requests.
+final class ChatRequestEncoder {
+    static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static final Map<String, ChatRequestEncoder> encoders = new ConcurrentHashMap<>();
+    private static final byte[] USER_MESSAGE_START = "{\"role\":\"user\",\"content\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MAX_TOKENS = "\"}],\"max_tokens\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END = "}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STREAMING_END = ",\"stream\":true}".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] prefix;
+    // System messages come from a handful of constants, so this stays tiny
+    private final Map<String, byte[]> systemMessages = new ConcurrentHashMap<>();
+
+    private ChatRequestEncoder(String model, double temperature, double frequencyPenalty, double presencePenalty) {
+        String head = String.format(Locale.ROOT,
+            "{\"model\":\"%s\",\"temperature\":%s,\"frequency_penalty\":%s,\"presence_penalty\":%s," +
+                "\"usage\":{\"include\":true},\"messages\":[",
+            new String(JsonStringEncoder.getInstance().quoteAsString(model)),
+            temperature, frequencyPenalty, presencePenalty);
+        this.prefix = head.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static ChatRequestEncoder forModel(String model, double temperature, double frequencyPenalty, double presencePenalty) {
+        String key = model + '|' + temperature + '|' + frequencyPenalty + '|' + presencePenalty;
+        return encoders.computeIfAbsent(key,
+            k -> new ChatRequestEncoder(model, temperature, frequencyPenalty, presencePenalty));
+    }
+
+    RequestBody encode(ChatPrompt prompt, boolean stream) {
+        byte[] system = prompt.getSystemMessage() == null ? new byte[0]
+            : systemMessages.computeIfAbsent(prompt.getSystemMessage(), ChatRequestEncoder::encodeSystemMessage);
+        byte[] content = JsonStringEncoder.getInstance().quoteAsUTF8(prompt.getUserMessage());
+        byte[] maxTokens = Integer.toString(prompt.getMaxTokens()).getBytes(StandardCharsets.US_ASCII);
+        byte[] end = stream ? STREAMING_END : END;
+        long length = prefix.length + system.length + USER_MESSAGE_START.length + content.length
+            + MAX_TOKENS.length + maxTokens.length + end.length;
+
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                sink.write(prefix);
+                sink.write(system);
+                sink.write(USER_MESSAGE_START);
+                sink.write(content);
+                sink.write(MAX_TOKENS);
+                sink.write(maxTokens);
+                sink.write(end);
+            }
+        };
+    }
+
+    private static byte[] encodeSystemMessage(String message) {
+        return ("{\"role\":\"system\",\"content\":\""
+            + new String(JsonStringEncoder.getInstance().quoteAsString(message)) + "\"},")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+}
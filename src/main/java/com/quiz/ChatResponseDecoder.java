@@ -0,0 +1,123 @@
+package com.quiz;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Pulls choices[0].<message|delta>.content out of a chat completion with a streaming parser,
+// reading straight from the response bytes and skipping everything else without building objects.
+// When asked for, the token counts in the "usage" block are read as well.
+final class ChatResponseDecoder {
+    // The mapper is only used to render the rare "error" object into a message
+    private static final ObjectMapper ERROR_MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = ERROR_MAPPER.getFactory();
+
+    private ChatResponseDecoder() {
+    }
+
+    static String decodeCompletion(InputStream body) throws IOException {
+        return decodeCompletion(body, null);
+    }
+
+    static String decodeCompletion(InputStream body, TokenUsageListener onUsage) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            String content = readResponse(parser, "message", onUsage);
+            if (content == null) {
+                throw new IOException("No choices in response");
+            }
+            return content;
+        }
+    }
+
+    // Content delta of one server-sent event payload; empty when the chunk carries no text.
+    // The final chunk of a stream carries the usage block instead.
+    static String decodeStreamChunk(String data) throws IOException {
+        return decodeStreamChunk(data, null);
+    }
+
+    static String decodeStreamChunk(String data, TokenUsageListener onUsage) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            String content = readResponse(parser, "delta", onUsage);
+            return content == null ? "" : content;
+        }
+    }
+
+    private static String readResponse(JsonParser parser, String container, TokenUsageListener onUsage) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object in response");
+        }
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    content = readChoiceContent(parser, container);
+                    // Without a usage listener the rest of the body is never parsed
+                    if (onUsage == null) {
+                        return content;
+                    }
+                    skipToEndOfArray(parser);
+                }
+            } else if ("usage".equals(field) && value == JsonToken.START_OBJECT && onUsage != null) {
+                readUsage(parser, onUsage);
+            } else if ("error".equals(field)) {
+                throw new IOException("Error in response: " + ERROR_MAPPER.readTree(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    // Reads the first choice object through to its end, returning its container's content
+    private static String readChoiceContent(JsonParser parser, String container) throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (container.equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String innerField = parser.getCurrentName();
+                    JsonToken innerValue = parser.nextToken();
+                    if ("content".equals(innerField) && innerValue == JsonToken.VALUE_STRING) {
+                        content = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    private static void skipToEndOfArray(JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+        }
+    }
+
+    private static void readUsage(JsonParser parser, TokenUsageListener onUsage) throws IOException {
+        int promptTokens = 0;
+        int completionTokens = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("prompt_tokens".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                promptTokens = parser.getIntValue();
+            } else if ("completion_tokens".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                completionTokens = parser.getIntValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        onUsage.onUsage(promptTokens, completionTokens);
+    }
+}
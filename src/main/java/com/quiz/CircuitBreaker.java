@@ -0,0 +1,77 @@
+package com.quiz;
+
+import java.io.IOException;
+
+// Stops calling a backend after repeated failures. Once open, calls fail fast until the cool-down
+// has passed; then a single trial call is let through, and its outcome closes or re-opens the breaker.
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+    private boolean trialInFlight = false;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (state != State.OPEN) {
+                System.out.println("Circuit breaker opened after " + consecutiveFailures + " consecutive failures");
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    // The call was abandoned before it could tell anything about the backend's health
+    public synchronized void recordCancelled() {
+        trialInFlight = false;
+    }
+
+    // Whether allowRequest would currently let a call through, without claiming a half-open trial
+    public synchronized boolean isAvailable() {
+        if (state == State.OPEN) {
+            return System.currentTimeMillis() - openedAt >= openMillis;
+        }
+        return state == State.CLOSED || !trialInFlight;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public static class OpenException extends IOException {
+        public OpenException() {
+            super("Question service is temporarily unavailable (circuit breaker open)");
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.quiz;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Memory-compact pool of questions. Question and option text is stored once as UTF-8 in fixed-size arena
+// pages, on or off the Java heap, and a question is just an int address of its text, four int addresses
+// of its options, a correct-option byte and a topic id in parallel primitive arrays. Identical option
+// texts ("All of the above", "None of the above", ...) are stored once through an open-addressing intern
+// table over the arena. get() hands out a lightweight Question view that decodes its text on demand.
+public class CompactQuestionStore {
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;  // 1 MiB
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final boolean offHeap;
+    private final List<ByteBuffer> pages = new ArrayList<>();
+    private ByteBuffer currentPage;
+
+    private int size = 0;
+    private int[] textAddresses = new int[INITIAL_CAPACITY];
+    private int[] optionAddresses = new int[INITIAL_CAPACITY * 4];
+    private byte[] correctOptions = new byte[INITIAL_CAPACITY];
+    private short[] topicIds = new short[INITIAL_CAPACITY];
+
+    // Open addressing: each slot holds an option address + 1, or 0 when empty
+    private int[] internTable = new int[1024];
+    private int internedCount = 0;
+
+    private final List<String> topics = new ArrayList<>();
+    private final Map<String, Short> topicIndex = new HashMap<>();
+
+    public CompactQuestionStore() {
+        this(false);
+    }
+
+    // offHeap keeps the text in direct buffers, outside the garbage-collected heap
+    public CompactQuestionStore(boolean offHeap) {
+        this.offHeap = offHeap;
+        newPage();
+    }
+
+    // Adds the question and returns its index
+    public synchronized int add(Question question) {
+        if (size == textAddresses.length) {
+            grow();
+        }
+        int index = size++;
+        textAddresses[index] = append(encode(question.getQuestionText()));
+        String[] options = question.getOptions();
+        for (int i = 0; i < 4; i++) {
+            optionAddresses[index * 4 + i] = intern(encode(options[i]));
+        }
+        correctOptions[index] = (byte) question.getCorrectOptionIndex();
+        topicIds[index] = topicId(question.getTopic());
+        return index;
+    }
+
+    // A view of the stored question; its text is only decoded when asked for
+    public Question get(int index) {
+        synchronized (this) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Question " + index + " of " + size);
+            }
+        }
+        return new View(index);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Bytes of text held in the arena pages
+    public synchronized long getArenaBytes() {
+        return (long) (pages.size() - 1) * PAGE_SIZE + currentPage.position();
+    }
+
+    // Distinct option texts stored
+    public synchronized int getInternedOptions() {
+        return internedCount;
+    }
+
+    private static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Entries are a 1-4 byte varint length followed by the UTF-8 bytes, and never cross a page
+    private int append(byte[] utf8) {
+        int needed = 5 + utf8.length;
+        if (needed > PAGE_SIZE) {
+            throw new IllegalArgumentException("Question text too long: " + utf8.length + " bytes");
+        }
+        if (currentPage.remaining() < needed) {
+            newPage();
+        }
+        int address = ((pages.size() - 1) << PAGE_BITS) | currentPage.position();
+        int length = utf8.length;
+        while (length >= 0x80) {
+            currentPage.put((byte) (length | 0x80));
+            length >>>= 7;
+        }
+        currentPage.put((byte) length);
+        currentPage.put(utf8);
+        return address;
+    }
+
+    private void newPage() {
+        if (pages.size() == (1 << (31 - PAGE_BITS))) {
+            throw new IllegalStateException("Question store is full");
+        }
+        currentPage = offHeap ? ByteBuffer.allocateDirect(PAGE_SIZE) : ByteBuffer.allocate(PAGE_SIZE);
+        pages.add(currentPage);
+    }
+
+    private int intern(byte[] utf8) {
+        int mask = internTable.length - 1;
+        int slot = Arrays.hashCode(utf8) & mask;
+        while (internTable[slot] != 0) {
+            int address = internTable[slot] - 1;
+            if (sameBytes(address, utf8)) {
+                return address;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int address = append(utf8);
+        internTable[slot] = address + 1;
+        if (++internedCount * 2 > internTable.length) {
+            rehash();
+        }
+        return address;
+    }
+
+    private void rehash() {
+        int[] old = internTable;
+        internTable = new int[old.length * 2];
+        int mask = internTable.length - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                int slot = Arrays.hashCode(bytesAt(entry - 1)) & mask;
+                while (internTable[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                internTable[slot] = entry;
+            }
+        }
+    }
+
+    private boolean sameBytes(int address, byte[] utf8) {
+        ByteBuffer page = pages.get(address >>> PAGE_BITS);
+        int position = address & (PAGE_SIZE - 1);
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = page.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        if (length != utf8.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (page.get(position + i) != utf8[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] bytesAt(int address) {
+        ByteBuffer page = pages.get(address >>> PAGE_BITS);
+        int position = address & (PAGE_SIZE - 1);
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = page.get(position++);
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        byte[] bytes = new byte[length];
+        ByteBuffer view = page.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return bytes;
+    }
+
+    private synchronized String stringAt(int address) {
+        return new String(bytesAt(address), StandardCharsets.UTF_8);
+    }
+
+    private short topicId(String topic) {
+        if (topic == null) {
+            return -1;
+        }
+        Short id = topicIndex.get(topic);
+        if (id == null) {
+            if (topics.size() == Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many topics in question store");
+            }
+            id = (short) topics.size();
+            topics.add(topic);
+            topicIndex.put(topic, id);
+        }
+        return id;
+    }
+
+    private void grow() {
+        int capacity = textAddresses.length * 2;
+        textAddresses = Arrays.copyOf(textAddresses, capacity);
+        optionAddresses = Arrays.copyOf(optionAddresses, capacity * 4);
+        correctOptions = Arrays.copyOf(correctOptions, capacity);
+        topicIds = Arrays.copyOf(topicIds, capacity);
+    }
+
+    // Flyweight: holds only the store and an index, and reads everything else from the store
+    private class View extends Question {
+        private final int index;
+
+        View(int index) {
+            super(null, null, -1, null);
+            this.index = index;
+        }
+
+        @Override
+        public String getQuestionText() {
+            int address;
+            synchronized (CompactQuestionStore.this) {
+                address = textAddresses[index];
+            }
+            return stringAt(address);
+        }
+
+        @Override
+        public String[] getOptions() {
+            String[] options = new String[4];
+            for (int i = 0; i < 4; i++) {
+                int address;
+                synchronized (CompactQuestionStore.this) {
+                    address = optionAddresses[index * 4 + i];
+                }
+                options[i] = stringAt(address);
+            }
+            return options;
+        }
+
+        @Override
+        public int getCorrectOptionIndex() {
+            synchronized (CompactQuestionStore.this) {
+                return correctOptions[index];
+            }
+        }
+
+        @Override
+        public String getTopic() {
+            synchronized (CompactQuestionStore.this) {
+                short id = topicIds[index];
+                return id >= 0 ? topics.get(id) : null;
+            }
+        }
+    }
+}
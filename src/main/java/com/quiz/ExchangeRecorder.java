@@ -0,0 +1,141 @@
+package com.quiz;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Saves every API request and its response to a directory, for the benchmarks module's
+// StubOpenRouterServer to replay.
+// Enabled with -Dquiz.api.recordDir=<directory>. Exchange n is stored as three files:
+// n.request.json, n.response (the decoded body exactly as the client read it) and n.properties
+// (path, status, content type, whether it streamed and how long the first byte and whole body took).
+// Streams are copied as the client reads them, so recording does not delay any tokens.
+public class ExchangeRecorder implements Interceptor {
+    private static final String PROPERTIES_SUFFIX = ".properties";
+
+    private final Path directory;
+    private final AtomicInteger nextId;
+
+    public ExchangeRecorder(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.nextId = new AtomicInteger(countExchanges(directory));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        // Only chat requests are worth replaying; preconnects carry no body
+        if (request.body() == null) {
+            return chain.proceed(request);
+        }
+
+        Buffer requestBody = new Buffer();
+        request.body().writeTo(requestBody);
+        long start = System.nanoTime();
+        Response response = chain.proceed(request);
+        long firstByteMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        String id = String.format("%06d", nextId.getAndIncrement());
+        Properties meta = new Properties();
+        meta.setProperty("path", request.url().encodedPath());
+        meta.setProperty("status", Integer.toString(response.code()));
+        meta.setProperty("contentType", body.contentType() != null ? body.contentType().toString() : "application/json");
+        meta.setProperty("stream", Boolean.toString(isStream(requestBody)));
+        meta.setProperty("firstByteMillis", Long.toString(firstByteMillis));
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter != null) {
+            meta.setProperty("retryAfter", retryAfter);
+        }
+        Files.write(directory.resolve(id + ".request.json"), requestBody.readByteArray());
+
+        RecordingSource recording = new RecordingSource(body.source(), id, meta, start);
+        return response.newBuilder()
+            .body(ResponseBody.create(Okio.buffer(recording), body.contentType(), body.contentLength()))
+            .build();
+    }
+
+    // Exchanges already saved, so a new run numbers its exchanges after them
+    private static int countExchanges(Path directory) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + PROPERTIES_SUFFIX)) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isStream(Buffer requestBody) {
+        // The encoder always ends streaming requests with this flag
+        return requestBody.snapshot().utf8().endsWith(",\"stream\":true}");
+    }
+
+    // Copies the body as it is read and writes the files once the client is done with it
+    private class RecordingSource extends ForwardingSource {
+        private final Buffer copy = new Buffer();
+        private final String id;
+        private final Properties meta;
+        private final long start;
+        private boolean saved = false;
+
+        RecordingSource(BufferedSource delegate, String id, Properties meta, long start) {
+            super(delegate);
+            this.id = id;
+            this.meta = meta;
+            this.start = start;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                sink.copyTo(copy, sink.size() - read, read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                save();
+            } finally {
+                super.close();
+            }
+        }
+
+        private void save() {
+            if (saved) {
+                return;
+            }
+            saved = true;
+            meta.setProperty("totalMillis", Long.toString(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            try {
+                Files.write(directory.resolve(id + ".response"), copy.readByteArray());
+                try (OutputStream out = Files.newOutputStream(directory.resolve(id + PROPERTIES_SUFFIX))) {
+                    meta.store(out, null);
+                }
+            } catch (IOException e) {
+                System.out.println("Failed to record exchange " + id + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.quiz;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Questions bundled with the application, used when the question service cannot be reached
+public class FallbackQuestions {
+    private static final String RESOURCE = "/fallback-questions.txt";
+    private static CompactQuestionStore questions;
+
+    private FallbackQuestions() {
+    }
+
+    // A random bundled question whose index is not in served, adding its index to served; null once all are used
+    public static Question next(Set<Integer> served) {
+        CompactQuestionStore all = load();
+        int size = all.size();
+        if (served.size() >= size) {
+            return null;
+        }
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (served.add(index)) {
+                return all.get(index);
+            }
+        }
+        return null;
+    }
+
+    private static synchronized CompactQuestionStore load() {
+        if (questions != null) {
+            return questions;
+        }
+        CompactQuestionStore loaded = new CompactQuestionStore();
+        try (InputStream in = FallbackQuestions.class.getResourceAsStream(RESOURCE)) {
+            if (in != null) {
+                String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                for (String block : text.split("\\n\\s*\\n")) {
+                    if (!block.isBlank()) {
+                        loaded.add(QuestionGenerator.parseResponse(block.trim()));
+                    }
+                }
+            }
+        } catch (IOException | QuestionGenerator.ResponseParseException e) {
+            System.out.println("Failed to load fallback questions: " + e.getMessage());
+        }
+        questions = loaded;
+        return questions;
+    }
+}
@@ -0,0 +1,28 @@
+package com.quiz;
+
+import javax.swing.*;
+import java.awt.*;
+
+// Panel with the application's diagonal blue gradient, drawn from a pre-rendered image per size
+// instead of being filled with a new GradientPaint on every repaint
+public class GradientPanel extends JPanel {
+    private static final Color GRADIENT_START = new Color(25, 118, 210);
+    private static final Color GRADIENT_END = new Color(25, 118, 210, 150);
+
+    public GradientPanel() {
+    }
+
+    public GradientPanel(LayoutManager layout) {
+        super(layout);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        Graphics2D g2d = (Graphics2D) g;
+        int w = getWidth();
+        int h = getHeight();
+        g2d.drawImage(RenderCache.gradient(g2d, w, h, getBackground(), GRADIENT_START, GRADIENT_END), 0, 0, w, h, null);
+        QuizMetrics.BACKGROUND_PAINT.recordSince(start);
+    }
+}
@@ -0,0 +1,90 @@
+package com.quiz;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decides when a slow chat completion gets a second, identical request racing it.
+// A hedge fires once a call has run longer than the configured percentile of recent latencies,
+// and only while the budget allows: every request earns budgetRatio hedges, so hedging can add
+// at most that fraction of extra requests.
+// Off by default, since every hedge is a second paid completion; -Dquiz.hedge.enabled=true turns it on,
+// and the other defaults can be overridden with -Dquiz.hedge.<name>=<value> system properties.
+public class HedgingPolicy {
+    private static final int LATENCY_WINDOW = 200;
+    private static final int MIN_SAMPLES = 20;
+    private static final double MAX_BUDGET_CREDIT = 5.0;
+
+    private static final HedgingPolicy DEFAULT = Boolean.getBoolean("quiz.hedge.enabled")
+        ? new HedgingPolicy(
+            Double.parseDouble(System.getProperty("quiz.hedge.percentile", "0.95")),
+            Double.parseDouble(System.getProperty("quiz.hedge.budget", "0.1")))
+        : null;
+
+    private final double percentile;
+    private final double budgetRatio;
+    // Completed calls and streams are timed separately: a stream is hedged on its first token
+    private final LatencyTracker completionLatency = new LatencyTracker(LATENCY_WINDOW);
+    private final LatencyTracker firstTokenLatency = new LatencyTracker(LATENCY_WINDOW);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedgesFired = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private double budgetCredit = 0;
+
+    public HedgingPolicy(double percentile, double budgetRatio) {
+        this.percentile = percentile;
+        this.budgetRatio = budgetRatio;
+    }
+
+    // Process-wide policy shared by all clients, or null when hedging is disabled
+    public static HedgingPolicy getDefault() {
+        return DEFAULT;
+    }
+
+    // Delay after which a hedge should be sent, or -1 while there is too little history
+    long hedgeDelayNanos(boolean stream) {
+        LatencyTracker tracker = stream ? firstTokenLatency : completionLatency;
+        return tracker.size() < MIN_SAMPLES ? -1 : tracker.percentile(percentile);
+    }
+
+    void recordLatency(boolean stream, long nanos) {
+        (stream ? firstTokenLatency : completionLatency).record(nanos);
+    }
+
+    synchronized void onRequest() {
+        requests.increment();
+        budgetCredit = Math.min(MAX_BUDGET_CREDIT, budgetCredit + budgetRatio);
+    }
+
+    synchronized boolean tryAcquireHedge() {
+        if (budgetCredit < 1.0) {
+            return false;
+        }
+        budgetCredit -= 1.0;
+        hedgesFired.increment();
+        return true;
+    }
+
+    void onHedgeWon() {
+        hedgesWon.increment();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getHedgesFired() {
+        return hedgesFired.sum();
+    }
+
+    public long getHedgesWon() {
+        return hedgesWon.sum();
+    }
+
+    @Override
+    public String toString() {
+        long p = hedgeDelayNanos(true);
+        return String.format("%d requests, %d hedged, %d hedges won (hedge after %s)",
+            getRequests(), getHedgesFired(), getHedgesWon(),
+            p < 0 ? "warm-up" : TimeUnit.NANOSECONDS.toMillis(p) + " ms");
+    }
+}
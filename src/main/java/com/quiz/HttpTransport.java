@@ -0,0 +1,255 @@
+package com.quiz;
+
+import okhttp3.*;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.UnknownHostException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide HTTP transport shared by every OpenRouterClient, so connections, TLS sessions,
+// DNS answers and dispatcher threads survive from one quiz to the next.
+// Settings can be overridden with -Dquiz.http.<name>=<value> system properties.
+public class HttpTransport {
+    private static final int MAX_IDLE_CONNECTIONS = Integer.getInteger("quiz.http.maxIdleConnections", 8);
+    private static final long KEEP_ALIVE_SECONDS = Long.getLong("quiz.http.keepAliveSeconds", 300);
+    private static final long CONNECT_TIMEOUT_SECONDS = Long.getLong("quiz.http.connectTimeoutSeconds", 10);
+    private static final long READ_TIMEOUT_SECONDS = Long.getLong("quiz.http.readTimeoutSeconds", 60);
+    private static final long WRITE_TIMEOUT_SECONDS = Long.getLong("quiz.http.writeTimeoutSeconds", 10);
+    private static final long CALL_TIMEOUT_SECONDS = Long.getLong("quiz.http.callTimeoutSeconds", 120);
+    private static final long DNS_TTL_SECONDS = Long.getLong("quiz.http.dnsTtlSeconds", 300);
+    // Off by default: not every provider accepts gzip-encoded request bodies
+    private static final boolean GZIP_REQUESTS = Boolean.getBoolean("quiz.http.gzipRequests");
+    // Saves every exchange for StubOpenRouterServer to replay; see ExchangeRecorder
+    private static final String RECORD_DIR = System.getProperty("quiz.api.recordDir");
+
+    private static final LongAdder tlsHandshakes = new LongAdder();
+    private static final LongAdder connectionsAcquired = new LongAdder();
+    private static final LongAdder connectionsReused = new LongAdder();
+
+    private static final OkHttpClient SHARED_CLIENT = buildClient();
+
+    private HttpTransport() {
+    }
+
+    public static OkHttpClient client() {
+        return SHARED_CLIENT;
+    }
+
+    // Opens a pooled connection to the url's host in the background, so DNS, TCP and TLS are done
+    // before the first real request needs them. The response is discarded and not timed.
+    public static void preconnect(String url) {
+        Request request = new Request.Builder()
+            .url(url)
+            .head()
+            .tag(Preconnect.class, Preconnect.INSTANCE)
+            .build();
+        SHARED_CLIENT.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                System.out.println("Preconnect to " + url + " failed: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+    }
+
+    public static Stats stats() {
+        return new Stats(tlsHandshakes.sum(), connectionsAcquired.sum(), connectionsReused.sum());
+    }
+
+    private static OkHttpClient buildClient() {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS))
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .writeTimeout(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .dns(new CachingDns(DNS_TTL_SECONDS))
+            .eventListenerFactory(call -> new CallStatsListener(call.request().tag(Preconnect.class) == null));
+        // Added ahead of gzip so recordings hold the JSON request rather than compressed bytes
+        if (RECORD_DIR != null) {
+            try {
+                builder.addInterceptor(new ExchangeRecorder(Paths.get(RECORD_DIR)));
+            } catch (IOException e) {
+                System.out.println("Recording disabled, cannot use " + RECORD_DIR + ": " + e.getMessage());
+            }
+        }
+        // OkHttp already negotiates gzip responses transparently; request compression is opt-in
+        if (GZIP_REQUESTS) {
+            builder.addInterceptor(new GzipRequestInterceptor());
+        }
+        return builder.build();
+    }
+
+    public static class Stats {
+        private final long tlsHandshakes;
+        private final long connectionsAcquired;
+        private final long connectionsReused;
+
+        private Stats(long tlsHandshakes, long connectionsAcquired, long connectionsReused) {
+            this.tlsHandshakes = tlsHandshakes;
+            this.connectionsAcquired = connectionsAcquired;
+            this.connectionsReused = connectionsReused;
+        }
+
+        public long getTlsHandshakes() {
+            return tlsHandshakes;
+        }
+
+        public long getConnectionsAcquired() {
+            return connectionsAcquired;
+        }
+
+        public long getConnectionsReused() {
+            return connectionsReused;
+        }
+
+        public double getReuseRatio() {
+            return connectionsAcquired == 0 ? 0.0 : (double) connectionsReused / connectionsAcquired;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d TLS handshakes, %d of %d requests reused a connection (%.0f%%)",
+                tlsHandshakes, connectionsReused, connectionsAcquired, getReuseRatio() * 100);
+        }
+    }
+
+    // One instance per call: a connection acquired without a preceding connect came from the pool.
+    // Also times each call's first byte and full round trip for QuizMetrics.
+    private static class CallStatsListener extends EventListener {
+        private final boolean timed;
+        private boolean connected;
+        private long callStart;
+        private boolean firstByteSeen;
+
+        CallStatsListener(boolean timed) {
+            this.timed = timed;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            // Follow-ups and redirects reuse the listener; only the first response counts
+            if (timed && !firstByteSeen) {
+                firstByteSeen = true;
+                QuizMetrics.TIME_TO_FIRST_BYTE.recordSince(callStart);
+            }
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            if (timed) {
+                QuizMetrics.HTTP_ROUND_TRIP.recordSince(callStart);
+            }
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connected = true;
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsHandshakes.increment();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            connectionsAcquired.increment();
+            if (!connected) {
+                connectionsReused.increment();
+            }
+            connected = false;
+        }
+    }
+
+    // Marks connection warm-up requests, which are left out of the latency metrics
+    private enum Preconnect {
+        INSTANCE
+    }
+
+    private static class CachingDns implements Dns {
+        private final long ttlNanos;
+        private final Map<String, CachedLookup> cache = new ConcurrentHashMap<>();
+
+        CachingDns(long ttlSeconds) {
+            this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        }
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            long now = System.nanoTime();
+            CachedLookup cached = cache.get(hostname);
+            if (cached != null && now - cached.resolvedAt < ttlNanos) {
+                return cached.addresses;
+            }
+            List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+            cache.put(hostname, new CachedLookup(addresses, now));
+            return addresses;
+        }
+    }
+
+    private static class CachedLookup {
+        private final List<InetAddress> addresses;
+        private final long resolvedAt;
+
+        CachedLookup(List<InetAddress> addresses, long resolvedAt) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+
+    private static class GzipRequestInterceptor implements Interceptor {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request original = chain.request();
+            if (original.body() == null || original.header("Content-Encoding") != null) {
+                return chain.proceed(original);
+            }
+            RequestBody body = original.body();
+            RequestBody gzipped = new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return body.contentType();
+                }
+
+                @Override
+                public long contentLength() {
+                    return -1;
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+                        body.writeTo(gzipSink);
+                    }
+                }
+            };
+            return chain.proceed(original.newBuilder()
+                .header("Content-Encoding", "gzip")
+                .method(original.method(), gzipped)
+                .build());
+        }
+    }
+}
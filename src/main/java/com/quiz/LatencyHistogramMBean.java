@@ -0,0 +1,16 @@
+package com.quiz;
+
+// JMX view of a LatencyHistogram; percentiles are bucket upper bounds, in milliseconds
+public interface LatencyHistogramMBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+}
@@ -0,0 +1,15 @@
+package com.quiz;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// A model behind a chat completions endpoint that questions can be generated from
+public interface LlmBackend {
+    String getName();
+
+    // Streams the reply to onToken and completes with the full content; onUsage receives the
+    // token counts the provider reports. The ticket says who the call is for and how urgent it is, for
+    // rate limiting. Cancelling the future abandons the call.
+    CompletableFuture<String> streamChatCompletionAsync(ChatPrompt prompt, RequestScheduler.Ticket ticket,
+                                                        Consumer<String> onToken, TokenUsageListener onUsage);
+}
@@ -16,24 +16,12 @@ public class LoginFrame extends JFrame {
         setResizable(false);
         
         initializeComponents();
+        // Connect to the API while the user is typing
+        QuizWarmup.warmTransport();
     }
 
     private void initializeComponents() {
-        mainPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-                int w = getWidth();
-                int h = getHeight();
-                Color color1 = new Color(25, 118, 210);
-                Color color2 = new Color(25, 118, 210, 150);
-                GradientPaint gp = new GradientPaint(0, 0, color1, w, h, color2);
-                g2d.setPaint(gp);
-                g2d.fillRect(0, 0, w, h);
-            }
-        };
+        mainPanel = new GradientPanel();
         mainPanel.setLayout(null);
 
         // Welcome Label
@@ -96,8 +84,10 @@ public class LoginFrame extends JFrame {
             }
             
             DifficultyLevel selectedDifficulty = (DifficultyLevel) difficultyComboBox.getSelectedItem();
+            // Questions start generating now and are ready by the time the rules are accepted
+            QuizWarmup warmup = QuizWarmup.start(Constants.API_KEY, selectedDifficulty, QuizFrame.TOTAL_QUESTIONS);
             dispose();
-            new RulesFrame(name, selectedDifficulty).setVisible(true);
+            new RulesFrame(name, selectedDifficulty, warmup).setVisible(true);
         });
         mainPanel.add(startButton);
 
@@ -0,0 +1,224 @@
+package com.quiz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Chooses which model route a question request goes to. Routes are grouped into cost tiers: a request
+// starts in the cheapest tier and escalates one tier per failed parse, so expensive models are only
+// paid for when a cheap one could not produce a usable question. Within a tier the route with the
+// lowest recent median latency wins among the healthy ones (breaker not open, most replies parsing);
+// new routes get their first samples before being compared, and a small share of requests explores.
+// Routes come from models.txt, or the file named by -Dquiz.models.file. One router is shared per API key.
+public class ModelRouter {
+    private static final String DEFAULT_RESOURCE = "/models.txt";
+    private static final int LATENCY_WINDOW = 200;
+    private static final int MIN_SAMPLES = 5;
+    private static final double EXPLORE_RATE = 0.05;
+    private static final double MIN_PARSE_SUCCESS = 0.5;
+    private static final double PARSE_SMOOTHING = 0.1;
+
+    private static final Map<String, ModelRouter> routers = new HashMap<>();
+
+    private final List<Route> routes;
+    private final int[] tiers;
+
+    public ModelRouter(List<Route> routes) {
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("Model router needs at least one route");
+        }
+        this.routes = new ArrayList<>(routes);
+        TreeSet<Integer> distinct = new TreeSet<>();
+        for (Route route : routes) {
+            distinct.add(route.tier);
+        }
+        this.tiers = distinct.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static synchronized ModelRouter forApiKey(String apiKey) {
+        ModelRouter router = routers.get(apiKey);
+        if (router == null) {
+            String file = System.getProperty("quiz.models.file");
+            try (InputStream in = file != null ? Files.newInputStream(Paths.get(file))
+                    : ModelRouter.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+                if (in == null) {
+                    throw new IOException("Missing resource " + DEFAULT_RESOURCE);
+                }
+                router = new ModelRouter(loadRoutes(in, apiKey));
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IllegalStateException("Failed to load model routes: " + e.getMessage(), e);
+            }
+            routers.put(apiKey, router);
+        }
+        return router;
+    }
+
+    // "model | tier [| temperature [| base URL]]" lines; blank lines and '#' comments are ignored
+    static List<Route> loadRoutes(InputStream in, String apiKey) throws IOException {
+        List<Route> routes = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\|", 4);
+            try {
+                String model = fields[0].trim();
+                int tier = fields.length > 1 ? Integer.parseInt(fields[1].trim()) : 0;
+                double temperature = fields.length > 2 ? Double.parseDouble(fields[2].trim()) : 0.9;
+                String baseUrl = fields.length > 3 ? fields[3].trim() : null;
+                String name = baseUrl != null ? model + "@" + baseUrl : model;
+                OpenRouterClient client = new OpenRouterClient(apiKey, baseUrl, model, temperature);
+                routes.add(new Route(new ResilientClient(name, client, ResilientClient.newBreaker(),
+                    new LatencyTracker(LATENCY_WINDOW)), tier));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid model route: " + line);
+            }
+        }
+        return routes;
+    }
+
+    // Route for a request that has already failed to parse `escalation` times
+    public Route select(int escalation) {
+        int start = Math.min(escalation, tiers.length - 1);
+        for (int t = start; t < tiers.length; t++) {
+            Route route = pick(tiers[t]);
+            if (route != null) {
+                return route;
+            }
+        }
+        // Nothing is healthy: the route that has parsed best is the least bad choice
+        Route best = routes.get(0);
+        for (Route route : routes) {
+            if (route.parseSuccess() > best.parseSuccess()) {
+                best = route;
+            }
+        }
+        return best;
+    }
+
+    private Route pick(int tier) {
+        List<Route> available = new ArrayList<>();
+        List<Route> healthy = new ArrayList<>();
+        for (Route route : routes) {
+            if (route.tier != tier || !route.backend.getBreaker().isAvailable()) {
+                continue;
+            }
+            available.add(route);
+            if (route.parseSuccess() >= MIN_PARSE_SUCCESS) {
+                if (route.latency.size() < MIN_SAMPLES) {
+                    return route;
+                }
+                healthy.add(route);
+            }
+        }
+        // Exploring keeps the estimates fresh, and gives routes that stopped parsing a chance to recover
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (available.size() > 1 && random.nextDouble() < EXPLORE_RATE) {
+            return available.get(random.nextInt(available.size()));
+        }
+        if (healthy.isEmpty()) {
+            return null;
+        }
+        Route fastest = null;
+        long fastestP50 = Long.MAX_VALUE;
+        long fastestP99 = Long.MAX_VALUE;
+        for (Route route : healthy) {
+            long p50 = route.latency.percentile(0.5);
+            long p99 = route.latency.percentile(0.99);
+            if (p50 < fastestP50 || (p50 == fastestP50 && p99 < fastestP99)) {
+                fastest = route;
+                fastestP50 = p50;
+                fastestP99 = p99;
+            }
+        }
+        return fastest;
+    }
+
+    public List<Route> getRoutes() {
+        return new ArrayList<>(routes);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder();
+        for (Route route : routes) {
+            if (summary.length() > 0) {
+                summary.append("; ");
+            }
+            summary.append(route);
+        }
+        return summary.toString();
+    }
+
+    // One model at one endpoint, with its own breaker, latency window and parse success rate
+    public static class Route implements LlmBackend {
+        private final ResilientClient backend;
+        private final int tier;
+        private final LatencyTracker latency = new LatencyTracker(LATENCY_WINDOW);
+        private double parseSuccess = 1.0;
+
+        Route(ResilientClient backend, int tier) {
+            this.backend = backend;
+            this.tier = tier;
+        }
+
+        @Override
+        public String getName() {
+            return backend.getName();
+        }
+
+        public int getTier() {
+            return tier;
+        }
+
+        @Override
+        public CompletableFuture<String> streamChatCompletionAsync(ChatPrompt prompt, RequestScheduler.Ticket ticket,
+                                                                   Consumer<String> onToken, TokenUsageListener onUsage) {
+            long start = System.nanoTime();
+            CompletableFuture<String> call = backend.streamChatCompletionAsync(prompt, ticket, onToken, onUsage);
+            call.whenComplete((content, error) -> {
+                if (error == null) {
+                    latency.record(System.nanoTime() - start);
+                }
+            });
+            return call;
+        }
+
+        // How many of the questions asked for in one reply came back in a usable format
+        public synchronized void recordParseResults(int parsed, int requested) {
+            if (requested > 0) {
+                parseSuccess += PARSE_SMOOTHING * ((double) parsed / requested - parseSuccess);
+            }
+        }
+
+        synchronized double parseSuccess() {
+            return parseSuccess;
+        }
+
+        @Override
+        public String toString() {
+            long p50 = latency.percentile(0.5);
+            long p99 = latency.percentile(0.99);
+            return String.format("%s (tier %d): p50 %s, p99 %s, %.0f%% parsed, breaker %s", getName(), tier,
+                p50 < 0 ? "-" : TimeUnit.NANOSECONDS.toMillis(p50) + " ms",
+                p99 < 0 ? "-" : TimeUnit.NANOSECONDS.toMillis(p99) + " ms",
+                parseSuccess() * 100, backend.getBreaker().getState());
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.quiz;
+
+import java.util.Arrays;
+
+// MinHash/LSH index over question text and options for spotting near-duplicate questions.
+// Each question becomes 64 MinHash values truncated to 8 bits (b-bit MinHash) and packed eight to a
+// long, so a signature is 8 longs, and every half long is one LSH band of 4 rows. Bands are bucketed
+// in flat int tables chained through an int array, so the index holds no objects per question:
+// about 200 bytes per stored question, and a lookup only touches the few questions sharing a band.
+public class NearDuplicateIndex {
+    private static final int HASHES = 64;
+    private static final int HASH_BITS = 8;
+    private static final long HASH_MASK = (1L << HASH_BITS) - 1;
+    private static final int LANES = 64 / HASH_BITS;
+    private static final int LONGS = HASHES / LANES;
+    // 16 bands of 4 rows: pairs at a Jaccard similarity of 0.7 become candidates 98% of the time,
+    // while unrelated questions sharing a few common words almost never do
+    private static final int BANDS = 16;
+    private static final int BAND_BITS = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Estimated Jaccard similarity at or above which two questions count as the same question
+    private static final double DEFAULT_THRESHOLD = 0.6;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int[] SEEDS = new int[HASHES];
+    private static final long[] STOP_WORDS = hashWords(
+        "a", "an", "the", "of", "to", "in", "on", "for", "and", "or", "is", "are", "what", "which", "that", "it", "by", "with");
+
+    static {
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = (int) seed;
+        }
+    }
+
+    private static NearDuplicateIndex defaultIndex;
+
+    private final int minMatches;
+    private long[] signatures = new long[INITIAL_CAPACITY * LONGS];
+    private int[] next = new int[INITIAL_CAPACITY * BANDS];
+    private int[] heads;
+    private int bucketMask;
+    private int size = 0;
+
+    public NearDuplicateIndex() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public NearDuplicateIndex(double threshold) {
+        // With b-bit values, unrelated minimums still agree once in 2^b, which raises the expected matches
+        double collision = 1.0 / (1 << HASH_BITS);
+        this.minMatches = (int) Math.ceil((threshold + (1 - threshold) * collision) * HASHES);
+        allocateBuckets(INITIAL_CAPACITY);
+    }
+
+    // Process-wide index of every question generated so far, seeded from the question bank in the
+    // background so duplicates are also caught across sessions
+    public static synchronized NearDuplicateIndex getDefault() {
+        if (defaultIndex == null) {
+            defaultIndex = new NearDuplicateIndex();
+            QuestionBank bank = QuestionBank.getDefault();
+            if (bank != null) {
+                NearDuplicateIndex index = defaultIndex;
+                Thread seeder = new Thread(() -> {
+                    try {
+                        bank.forEach(index::add);
+                    } catch (Exception e) {
+                        System.out.println("Failed to index question bank: " + e.getMessage());
+                    }
+                }, "near-duplicate-seeder");
+                seeder.setDaemon(true);
+                seeder.start();
+            }
+        }
+        return defaultIndex;
+    }
+
+    public boolean isNearDuplicate(Question question) {
+        long[] signature = signature(question);
+        synchronized (this) {
+            return findMatch(signature);
+        }
+    }
+
+    // Adds the question unless a near-duplicate is already indexed; returns whether it was added
+    public boolean addIfNovel(Question question) {
+        long[] signature = signature(question);
+        synchronized (this) {
+            if (findMatch(signature)) {
+                return false;
+            }
+            insert(signature);
+            return true;
+        }
+    }
+
+    public void add(Question question) {
+        long[] signature = signature(question);
+        synchronized (this) {
+            insert(signature);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private boolean findMatch(long[] signature) {
+        for (int band = 0; band < BANDS; band++) {
+            long value = bandValue(signature, 0, band);
+            int doc = heads[bucket(band, value)];
+            while (doc >= 0) {
+                if (bandValue(signatures, doc * LONGS, band) == value && matches(doc, signature) >= minMatches) {
+                    return true;
+                }
+                doc = next[doc * BANDS + band];
+            }
+        }
+        return false;
+    }
+
+    private int matches(int doc, long[] signature) {
+        int matches = 0;
+        int base = doc * LONGS;
+        for (int i = 0; i < LONGS; i++) {
+            long diff = signatures[base + i] ^ signature[i];
+            for (int row = 0; row < 64; row += HASH_BITS) {
+                if (((diff >>> row) & HASH_MASK) == 0) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void insert(long[] signature) {
+        if ((size + 1) * LONGS > signatures.length) {
+            signatures = Arrays.copyOf(signatures, signatures.length * 2);
+            next = Arrays.copyOf(next, next.length * 2);
+        }
+        int doc = size++;
+        System.arraycopy(signature, 0, signatures, doc * LONGS, LONGS);
+        if (size > bucketMask + 1) {
+            allocateBuckets((bucketMask + 1) * 2);
+            for (int i = 0; i < size; i++) {
+                link(i);
+            }
+        } else {
+            link(doc);
+        }
+    }
+
+    private void link(int doc) {
+        for (int band = 0; band < BANDS; band++) {
+            int bucket = bucket(band, bandValue(signatures, doc * LONGS, band));
+            next[doc * BANDS + band] = heads[bucket];
+            heads[bucket] = doc;
+        }
+    }
+
+    // One table per band, laid out side by side in a single array
+    private void allocateBuckets(int bucketsPerBand) {
+        heads = new int[bucketsPerBand * BANDS];
+        Arrays.fill(heads, -1);
+        bucketMask = bucketsPerBand - 1;
+    }
+
+    private static long bandValue(long[] signatures, int base, int band) {
+        return (signatures[base + band / 2] >>> ((band % 2) * BAND_BITS)) & 0xFFFFFFFFL;
+    }
+
+    private int bucket(int band, long bandValue) {
+        return band * (bucketMask + 1) + (int) (mix(bandValue + band) & bucketMask);
+    }
+
+    static long[] signature(Question question) {
+        int[] minimums = new int[HASHES];
+        Arrays.fill(minimums, Integer.MAX_VALUE);
+        addShingles(question.getQuestionText(), minimums);
+        for (String option : question.getOptions()) {
+            addShingles(option, minimums);
+        }
+
+        long[] signature = new long[LONGS];
+        for (int i = 0; i < HASHES; i++) {
+            signature[i / LANES] |= (minimums[i] & HASH_MASK) << ((i % LANES) * HASH_BITS);
+        }
+        return signature;
+    }
+
+    // Shingles are content words and adjacent word pairs, so rewording and option order matter little.
+    // Words are hashed while scanning, without building substrings.
+    private static void addShingles(String text, int[] minimums) {
+        long previous = 0;
+        long hash = FNV_OFFSET;
+        boolean inWord = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inWord = true;
+                continue;
+            }
+            if (inWord) {
+                long word = mix(hash);
+                if (Arrays.binarySearch(STOP_WORDS, word) < 0) {
+                    update(minimums, word);
+                    if (previous != 0) {
+                        update(minimums, mix(previous * 31 + word));
+                    }
+                    previous = word;
+                }
+                hash = FNV_OFFSET;
+                inWord = false;
+            }
+        }
+    }
+
+    // Each shingle is already a well-mixed hash, so a 32-bit multiply and shift per hash function is
+    // enough to permute it; values are kept non-negative so the loop is a plain min the JIT vectorises
+    private static void update(int[] minimums, long shingle) {
+        int folded = (int) (shingle ^ (shingle >>> 32));
+        for (int i = 0; i < HASHES; i++) {
+            int value = (folded ^ SEEDS[i]) * 0x9E3779B1;
+            minimums[i] = Math.min(minimums[i], (value ^ (value >>> 15)) >>> 1);
+        }
+    }
+
+    private static long[] hashWords(String... words) {
+        long[] hashes = new long[words.length];
+        for (int i = 0; i < words.length; i++) {
+            long hash = FNV_OFFSET;
+            for (int j = 0; j < words[i].length(); j++) {
+                hash = (hash ^ words[i].charAt(j)) * FNV_PRIME;
+            }
+            hashes[i] = mix(hash);
+        }
+        Arrays.sort(hashes);
+        return hashes;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
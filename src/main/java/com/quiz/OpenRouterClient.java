@@ -1,89 +1,170 @@
 package com.quiz;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSource;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class OpenRouterClient {
-    private static final String BASE_URL = "https://openrouter.ai/api/v1";
+    // -Dquiz.api.baseUrl points the app at another endpoint, such as a StubOpenRouterServer
+    private static final String BASE_URL = System.getProperty("quiz.api.baseUrl", "https://openrouter.ai/api/v1");
+    // Output cap for the warm-up prompt, which is only encoded, never sent
+    private static final int DEFAULT_MAX_TOKENS = 4000;
+    private static final String MODEL = "openai/gpt-3.5-turbo";
+    private static final double DEFAULT_TEMPERATURE = 0.9;
+    // Canned payloads pushed through the codecs once so their classes are loaded before the first request
+    private static final byte[] WARM_UP_COMPLETION = ("{\"choices\":[{\"message\":{\"content\":\"ok\"}}],"
+        + "\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":1}}").getBytes(StandardCharsets.UTF_8);
+    private static final String WARM_UP_CHUNK = "{\"choices\":[{\"delta\":{\"content\":\"ok\"}}]}";
     private final OkHttpClient client;
     private final String apiKey;
-    private final ObjectMapper objectMapper;
+    private final String baseUrl;
+    private final ChatRequestEncoder encoder;
 
     public OpenRouterClient(String apiKey) {
+        this(apiKey, BASE_URL);
+    }
+
+    public OpenRouterClient(String apiKey, String baseUrl) {
+        this(apiKey, baseUrl, MODEL, DEFAULT_TEMPERATURE);
+    }
+
+    // baseUrl null means the configured default endpoint
+    public OpenRouterClient(String apiKey, String baseUrl, String model, double temperature) {
         this.apiKey = apiKey;
-        this.client = new OkHttpClient();
-        this.objectMapper = new ObjectMapper();
+        this.baseUrl = baseUrl != null ? baseUrl : BASE_URL;
+        this.client = HttpTransport.client();
+        this.encoder = ChatRequestEncoder.forModel(model, temperature, 1.0, 1.0);
     }
 
-    public String createChatCompletion(String prompt) throws IOException {
-        MediaType JSON = MediaType.get("application/json; charset=utf-8");
-        
-        Map<String, Object> message = new HashMap<>();
-        message.put("role", "user");
-        message.put("content", prompt);
+    // Connects to the API and loads the HTTP and JSON classes ahead of the first real request.
+    // Sends no prompt, so it costs no tokens.
+    public static void warmUp() {
+        HttpTransport.preconnect(BASE_URL + "/models");
+        try {
+            ChatRequestEncoder.forModel(MODEL, DEFAULT_TEMPERATURE, 1.0, 1.0).encode(userPrompt("warm-up"), true).writeTo(new Buffer());
+            ChatResponseDecoder.decodeCompletion(new ByteArrayInputStream(WARM_UP_COMPLETION), null);
+            ChatResponseDecoder.decodeStreamChunk(WARM_UP_CHUNK, null);
+        } catch (IOException e) {
+            System.out.println("Codec warm-up failed: " + e.getMessage());
+        }
+    }
 
-        List<Map<String, Object>> messages = new ArrayList<>();
-        messages.add(message);
+    String getApiKey() {
+        return apiKey;
+    }
 
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", "openai/gpt-3.5-turbo");
-        requestBody.put("messages", messages);
-        requestBody.put("temperature", 0.9);
-        requestBody.put("max_tokens", 4000);
-        requestBody.put("frequency_penalty", 1.0);
-        requestBody.put("presence_penalty", 1.0);
+    // Streams the completion as server-sent events, handing each content delta to onToken as it arrives,
+    // and completes with the full content once the stream ends. onUsage, if given, receives the token
+    // counts the provider reports; timeoutMillis bounds the whole call, 0 keeps the transport's default.
+    // Cancelling the returned future cancels the underlying HTTP call.
+    public CompletableFuture<String> streamChatCompletionAsync(ChatPrompt prompt, Consumer<String> onToken,
+                                                               TokenUsageListener onUsage, long timeoutMillis) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Call call = client.newCall(buildRequest(prompt, true));
+        if (timeoutMillis > 0) {
+            call.timeout().timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
 
-        String jsonBody = objectMapper.writeValueAsString(requestBody);
+        // Abandoning the future releases the socket and dispatcher thread straight away
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
 
-        Request request = new Request.Builder()
-            .url(BASE_URL + "/chat/completions")
-            .addHeader("Authorization", "Bearer " + apiKey)
-            .addHeader("HTTP-Referer", "localhost")
-            .addHeader("X-Title", "Software Engineering Quiz")
-            .post(RequestBody.create(jsonBody, JSON))
-            .build();
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    future.complete(readStream(response, onToken, onUsage));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "Unknown error";
-                System.out.println("Error response from OpenRouter: " + errorBody);
-                throw new IOException("Unexpected response code: " + response.code() + "\n" + errorBody);
+    // Package-private so the benchmarks can exercise decoding without a live response
+    String decodeCompletion(InputStream responseBody, TokenUsageListener onUsage) throws IOException {
+        return ChatResponseDecoder.decodeCompletion(responseBody, usageListener(onUsage));
+    }
+
+    // Usage always feeds the metrics, and the caller's listener too when there is one
+    private static TokenUsageListener usageListener(TokenUsageListener onUsage) {
+        if (onUsage == null) {
+            return QuizMetrics::recordTokenUsage;
+        }
+        return (promptTokens, completionTokens) -> {
+            QuizMetrics.recordTokenUsage(promptTokens, completionTokens);
+            onUsage.onUsage(promptTokens, completionTokens);
+        };
+    }
+
+    private String readStream(Response response, Consumer<String> onToken, TokenUsageListener onUsage) throws IOException {
+        checkResponse(response);
+
+        TokenUsageListener usage = usageListener(onUsage);
+        StringBuilder content = new StringBuilder();
+        BufferedSource source = response.body().source();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            // Skip blank separators and SSE comments such as ": OPENROUTER PROCESSING"
+            if (!line.startsWith("data:")) {
+                continue;
+            }
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                break;
             }
 
-            String responseBody = response.body().string();
-            System.out.println("OpenRouter Response: " + responseBody);
-            
-            OpenRouterResponse completionResponse = objectMapper.readValue(responseBody, OpenRouterResponse.class);
-            if (completionResponse.choices == null || completionResponse.choices.isEmpty()) {
-                throw new IOException("No choices in response");
+            String token = ChatResponseDecoder.decodeStreamChunk(data, usage);
+            if (!token.isEmpty()) {
+                content.append(token);
+                onToken.accept(token);
             }
-            return completionResponse.choices.get(0).message.content;
         }
+
+        if (content.length() == 0) {
+            throw new IOException("No content in streamed response");
+        }
+        return content.toString();
+    }
+
+    private Request buildRequest(ChatPrompt prompt, boolean stream) {
+        return new Request.Builder()
+            .url(baseUrl + "/chat/completions")
+            .addHeader("Authorization", "Bearer " + apiKey)
+            .addHeader("HTTP-Referer", "localhost")
+            .addHeader("X-Title", "Software Engineering Quiz")
+            .post(encodeRequestBody(prompt, stream))
+            .build();
     }
 
-    // Response classes for JSON deserialization
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class OpenRouterResponse {
-        @JsonProperty("choices")
-        public List<Choice> choices;
+    RequestBody encodeRequestBody(ChatPrompt prompt, boolean stream) {
+        return encoder.encode(prompt, stream);
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class Choice {
-        @JsonProperty("message")
-        public Message message;
+    private static ChatPrompt userPrompt(String prompt) {
+        return new ChatPrompt(null, prompt, DEFAULT_MAX_TOKENS);
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class Message {
-        @JsonProperty("content")
-        public String content;
+    private void checkResponse(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            String errorBody = response.body() != null ? response.body().string() : "Unknown error";
+            System.out.println("Error response from OpenRouter: " + errorBody);
+            throw new OpenRouterException(response.code(), response.header("Retry-After"), errorBody);
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+package com.quiz;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+// An unsuccessful HTTP response from the chat completion endpoint
+public class OpenRouterException extends IOException {
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    public OpenRouterException(int statusCode, String retryAfter, String errorBody) {
+        super("Unexpected response code: " + statusCode + "\n" + errorBody);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = parseRetryAfter(retryAfter);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    // Delay requested by the server's Retry-After header, or -1 if it sent none
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    // Rate limiting and server errors are worth retrying; other client errors will fail again
+    public boolean isRetryable() {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    // Retry-After is either a number of seconds or an HTTP date
+    private static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toMillis());
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+}
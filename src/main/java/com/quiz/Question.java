@@ -4,11 +4,22 @@ public class Question {
     private String questionText;
     private String[] options;
     private int correctOptionIndex;
+    private String topic;
 
     public Question(String questionText, String[] options, int correctOptionIndex) {
+        this(questionText, options, correctOptionIndex, null);
+    }
+
+    public Question(String questionText, String[] options, int correctOptionIndex, String topic) {
         this.questionText = questionText;
         this.options = options;
         this.correctOptionIndex = correctOptionIndex;
+        this.topic = topic;
+    }
+
+    // Same question, labelled with the topic it was generated for
+    public Question withTopic(String topic) {
+        return new Question(getQuestionText(), getOptions(), getCorrectOptionIndex(), topic);
     }
 
     public String getQuestionText() {
@@ -19,11 +30,16 @@ public class Question {
         return options;
     }
 
+    // Topic the question was generated for, or null if unknown
+    public String getTopic() {
+        return topic;
+    }
+
     public int getCorrectOptionIndex() {
         return correctOptionIndex;
     }
 
     public boolean isCorrectAnswer(int selectedOption) {
-        return selectedOption == correctOptionIndex;
+        return selectedOption == getCorrectOptionIndex();
     }
 } 
\ No newline at end of file
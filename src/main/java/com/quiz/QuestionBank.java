@@ -0,0 +1,263 @@
+package com.quiz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Persistent, append-only store of generated questions keyed by topic and difficulty.
+// Records live in a data file that is read through fixed-size memory-mapped pages, each mapped once
+// when first needed; the partly written last page, and the odd record that crosses a page boundary,
+// are read with positional reads instead. A separate index file holds one fixed-size entry per record
+// and is only scanned the first time a lookup needs it.
+public class QuestionBank {
+    private static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".se-quiz");
+    private static final int INDEX_ENTRY_SIZE = 16;  // long offset, int topic hash, int difficulty
+    private static final int PAGE_BITS = 24;
+    private static final long PAGE_SIZE = 1L << PAGE_BITS;  // 16 MiB
+
+    private static QuestionBank defaultBank;
+
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final List<MappedByteBuffer> pages = new ArrayList<>();
+    private Map<Long, OffsetList> index;
+
+    public QuestionBank(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.dataChannel = FileChannel.open(directory.resolve("question-bank.dat"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexChannel = FileChannel.open(directory.resolve("question-bank.idx"),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Shared bank in the user's home directory, or null if it cannot be opened
+    public static synchronized QuestionBank getDefault() {
+        if (defaultBank == null) {
+            try {
+                defaultBank = new QuestionBank(DEFAULT_DIRECTORY);
+            } catch (IOException e) {
+                System.out.println("Question bank unavailable: " + e.getMessage());
+                return null;
+            }
+        }
+        return defaultBank;
+    }
+
+    public synchronized void add(String topic, DifficultyLevel difficulty, Question question) throws IOException {
+        byte[][] fields = new byte[6][];
+        fields[0] = topic.getBytes(StandardCharsets.UTF_8);
+        fields[1] = question.getQuestionText().getBytes(StandardCharsets.UTF_8);
+        String[] options = question.getOptions();
+        for (int i = 0; i < 4; i++) {
+            fields[i + 2] = options[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        int length = 2;  // difficulty and correct option
+        for (byte[] field : fields) {
+            length += 4 + field.length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(4 + length);
+        record.putInt(length);
+        record.put((byte) difficulty.ordinal());
+        record.put((byte) question.getCorrectOptionIndex());
+        for (byte[] field : fields) {
+            record.putInt(field.length);
+            record.put(field);
+        }
+        record.flip();
+
+        // Data first, then the index entry, so the index never points past the end of the data
+        long offset = dataChannel.size();
+        writeFully(dataChannel, record, offset);
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        entry.putLong(offset).putInt(topic.hashCode()).putInt(difficulty.ordinal());
+        entry.flip();
+        writeFully(indexChannel, entry, indexChannel.size());
+
+        if (index != null) {
+            index.computeIfAbsent(key(topic.hashCode(), difficulty.ordinal()), k -> new OffsetList()).add(offset);
+        }
+    }
+
+    // Returns a random stored question for the topic and difficulty whose offset is not in exclude,
+    // adding the chosen offset to exclude; null if none is found
+    public synchronized Question randomQuestion(String topic, DifficultyLevel difficulty, Set<Long> exclude) throws IOException {
+        loadIndex();
+        OffsetList offsets = index.get(key(topic.hashCode(), difficulty.ordinal()));
+        if (offsets == null) {
+            return null;
+        }
+
+        // Walk from a random starting point so repeated lookups spread over the stored questions
+        int start = ThreadLocalRandom.current().nextInt(offsets.size);
+        for (int i = 0; i < offsets.size; i++) {
+            long offset = offsets.values[(start + i) % offsets.size];
+            if (exclude.contains(offset)) {
+                continue;
+            }
+            Question question = readQuestion(offset, topic);
+            if (question != null) {
+                exclude.add(offset);
+                return question;
+            }
+        }
+        return null;
+    }
+
+    // Reads every stored question in the order it was added
+    public void forEach(Consumer<Question> action) throws IOException {
+        long position = 0;
+        while (true) {
+            Question question;
+            synchronized (this) {
+                int length = recordLength(position);
+                if (length < 0) {
+                    return;
+                }
+                question = readQuestion(position, null);
+                position += 4 + length;
+            }
+            // Run the action outside the lock so adds are not held up by a long scan
+            if (question != null) {
+                action.accept(question);
+            }
+        }
+    }
+
+    public synchronized int size() throws IOException {
+        return (int) (indexChannel.size() / INDEX_ENTRY_SIZE);
+    }
+
+    private void loadIndex() throws IOException {
+        if (index != null) {
+            return;
+        }
+        index = new HashMap<>();
+        long dataSize = dataChannel.size();
+        long indexSize = indexChannel.size() - indexChannel.size() % INDEX_ENTRY_SIZE;
+        if (indexSize == 0) {
+            return;
+        }
+        MappedByteBuffer entries = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexSize);
+        while (entries.remaining() >= INDEX_ENTRY_SIZE) {
+            long offset = entries.getLong();
+            int topicHash = entries.getInt();
+            int difficulty = entries.getInt();
+            if (offset < dataSize) {
+                index.computeIfAbsent(key(topicHash, difficulty), k -> new OffsetList()).add(offset);
+            }
+        }
+    }
+
+    // Length of the record at offset, or -1 if there is no complete record there
+    private int recordLength(long offset) throws IOException {
+        ByteBuffer header = read(offset, 4);
+        if (header == null) {
+            return -1;
+        }
+        int length = header.getInt();
+        return length >= 0 && offset + 4 + length <= dataChannel.size() ? length : -1;
+    }
+
+    // expectedTopic may be null to accept a record of any topic
+    private Question readQuestion(long offset, String expectedTopic) throws IOException {
+        int length = recordLength(offset);
+        if (length < 0) {
+            return null;
+        }
+        ByteBuffer record = read(offset + 4, length);
+        record.get();  // difficulty, already matched through the index
+        int correctIndex = record.get();
+        String topic = readString(record);
+        if (expectedTopic != null && !topic.equals(expectedTopic)) {
+            return null;  // topic hash collision
+        }
+        String questionText = readString(record);
+        String[] options = new String[4];
+        for (int i = 0; i < 4; i++) {
+            options[i] = readString(record);
+        }
+        return new Question(questionText, options, correctIndex);
+    }
+
+    // length bytes of the data file from position, or null past its end. Bytes inside one complete page
+    // come straight from that page's mapping; anything else is copied out with a positional read.
+    private ByteBuffer read(long position, int length) throws IOException {
+        long end = position + length;
+        long dataSize = dataChannel.size();
+        if (end > dataSize) {
+            return null;
+        }
+        long page = position >>> PAGE_BITS;
+        if (length > 0 && (end - 1) >>> PAGE_BITS == page && (page + 1) * PAGE_SIZE <= dataSize) {
+            ByteBuffer view = mappedPage((int) page).duplicate();
+            int start = (int) (position & (PAGE_SIZE - 1));
+            view.limit(start + length).position(start);
+            return view;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (dataChannel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Only called for pages the data file already fills, which never change once written
+    private MappedByteBuffer mappedPage(int page) throws IOException {
+        while (pages.size() <= page) {
+            pages.add(null);
+        }
+        MappedByteBuffer mapped = pages.get(page);
+        if (mapped == null) {
+            mapped = dataChannel.map(FileChannel.MapMode.READ_ONLY, page * PAGE_SIZE, PAGE_SIZE);
+            pages.set(page, mapped);
+        }
+        return mapped;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static long key(int topicHash, int difficulty) {
+        return ((long) topicHash << 8) | difficulty;
+    }
+
+    private static class OffsetList {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
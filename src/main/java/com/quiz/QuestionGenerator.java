@@ -1,149 +1,509 @@
 package com.quiz;
 
-import javax.swing.*;
-import java.awt.*;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class QuestionGenerator {
-    private OpenRouterClient client;
+    // Lookahead buffer bounds; the actual depth adapts to observed generation latency
+    private static final int MIN_PREFETCH_DEPTH = 1;
+    private static final int MAX_PREFETCH_DEPTH = 4;
+    private static final int INITIAL_PREFETCH_DEPTH = 2;
+    private static final double LATENCY_SMOOTHING = 0.3;
+    // Questions requested per chat completion, and how often failed questions of a batch are re-requested
+    private static final int DEFAULT_BATCH_SIZE = 5;
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+    private static final int MAX_TOKENS_PER_REQUEST = 4000;
+    // Share of questions served from the on-disk question bank instead of being generated fresh
+    private static final double DEFAULT_CACHED_QUESTION_RATIO = Math.max(0.0, Math.min(1.0,
+        Double.parseDouble(System.getProperty("quiz.bank.cachedRatio", "0.3"))));
+    // Token budgets; 0 disables a limit. The daily budget is shared by every session in the process
+    private static final long SESSION_TOKEN_BUDGET = Long.getLong("quiz.tokens.sessionBudget", 50_000);
+    private static final TokenBudget dailyBudget = TokenBudget.perDay(Long.getLong("quiz.tokens.dailyBudget", 500_000));
+    // Parsing and bank I/O are short, so all generators share one small pool instead of owning threads
+    static final ExecutorService prefetchExecutor = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "question-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private RequestCoalescer coalescer;
     private DifficultyLevel difficulty;
-    private Set<String> askedTopics = new HashSet<>();
-    private static final String[] TOPICS = {
-        "Software Development Methodologies",
-        "Design Patterns and Architecture",
-        "Testing and Quality Assurance",
-        "DevOps and Deployment",
-        "Programming Paradigms",
-        "Data Structures and Algorithms",
-        "Software Security",
-        "Database Systems",
-        "Version Control",
-        "Requirements Engineering",
-        "operating systems",
-        "computer networks",
-        "artificial intelligence",
-        "machine learning",
-        "data science",
-        "web development",
-        "cloud computing",
-        "software engineering principles",
-        "object-oriented programming",
-        "system design",
-        "software testing",
-        "software maintenance",
-    };
-    private static final String SYSTEM_PROMPT_TEMPLATE = 
-        "You are a software engineering quiz generator. Generate a unique %s level multiple choice question about software engineering. " +
-        "The question must be about this specific topic: %s. " +
-        "The question should be appropriate for the difficulty level:\n" +
+    private final int questionLimit;
+    private final TopicScheduler topicScheduler = new TopicScheduler(TopicCatalog.getDefault());
+    private final Deque<PendingQuestion> prefetchBuffer = new ArrayDeque<>();
+    private int reservedQuestions = 0;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private final QuestionBank questionBank = QuestionBank.getDefault();
+    private final Set<Long> servedFromBank = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> servedFallbacks = ConcurrentHashMap.newKeySet();
+    // Every question this session has handed out; the coalescer checks against all sessions
+    private final NearDuplicateIndex sessionQuestions = new NearDuplicateIndex();
+    private volatile double cachedQuestionRatio = DEFAULT_CACHED_QUESTION_RATIO;
+    private final TokenBudget sessionBudget = TokenBudget.perSession(SESSION_TOKEN_BUDGET);
+    private double avgGenerationMillis = -1;
+    private double avgConsumeIntervalMillis = -1;
+    private long lastTakeNanos = 0;
+    private boolean shutdown = false;
+    // The instructions are the same for every request so the provider can cache them as a prompt prefix;
+    // only the short user message varies
+    static final String SYSTEM_MESSAGE =
+        "You are a software engineering quiz generator. You write unique multiple choice questions about software engineering. " +
+        "Questions should be appropriate for the requested difficulty level:\n" +
         "- EASY: Basic concepts and fundamentals\n" +
         "- MEDIUM: Intermediate concepts and practical applications\n" +
         "- HARD: Advanced topics and complex principles\n\n" +
-        "Format your response exactly like this example:\n" +
+        "Separate questions with a blank line and format each one exactly like this example, with no numbering or extra text " +
+        "other than the topic line a batch request asks for:\n" +
         "Q: What is encapsulation in OOP?\n" +
         "A) Bundling data and methods that operate on that data within a single unit\n" +
         "B) Breaking down a problem into smaller sub-problems\n" +
         "C) Inheriting properties from parent class\n" +
         "D) Converting one data type to another\n" +
         "Correct: A";
+    static final String QUESTION_PROMPT_TEMPLATE =
+        "Generate one %s level question about this specific topic: %s";
+    static final String BATCH_PROMPT_TEMPLATE =
+        "Generate %d %s level questions, one for each of the following topics. Put a line \"Topic: <number>\" " +
+        "with the topic's number from this list directly before each question:\n%s";
+    // "Topic: 3" above a batch question; models sometimes drop the colon or add the topic name after the number
+    private static final Pattern TOPIC_LINE = Pattern.compile("^Topic\\s*:?\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
 
-    public QuestionGenerator(String apiKey, DifficultyLevel difficulty) {
+    public QuestionGenerator(String apiKey, DifficultyLevel difficulty, int questionLimit) {
+        this.questionLimit = questionLimit;
         try {
-            this.client = new OpenRouterClient(apiKey);
+            this.coalescer = RequestCoalescer.forApiKey(apiKey);
             this.difficulty = difficulty;
         } catch (Exception e) {
-            String errorMsg = "Failed to initialize OpenRouter client: " + e.getMessage();
-            showErrorDialog("API Error", errorMsg, null);
-            throw new RuntimeException(errorMsg, e);
+            throw new RuntimeException("Failed to initialize OpenRouter client: " + e.getMessage(), e);
+        }
+
+        // Start filling the lookahead buffer right away so the first question is already on its way
+        synchronized (this) {
+            refillBuffer();
         }
     }
 
+    public DifficultyLevel getDifficulty() {
+        return difficulty;
+    }
+
     public Question generateQuestion() throws Exception {
+        return generateQuestion(null);
+    }
+
+    // The listener, if given, is told about the question text and options as they stream in
+    public Question generateQuestion(ProgressListener listener) throws Exception {
+        try {
+            return nextQuestion(listener).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    // Non-blocking variant of generateQuestion. Cancelling the returned future abandons the question,
+    // and cancels its HTTP call once no other question, from this session or another, is waiting on it.
+    public CompletableFuture<Question> nextQuestion(ProgressListener listener) {
+        long start = System.nanoTime();
+        PendingQuestion next;
+        synchronized (this) {
+            if (shutdown) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Question generator has been shut down"));
+            }
+            recordTake();
+            if (prefetchBuffer.isEmpty()) {
+                scheduleFetch();
+            }
+            next = prefetchBuffer.poll();
+            refillBuffer();
+        }
+        // The user is now waiting on this question, so it no longer queues as a prefetch
+        if (!next.future.isDone()) {
+            next.ticket.promote(RequestScheduler.Priority.USER_BLOCKING);
+        }
+
+        next.setListener(listener);
+        next.future.whenComplete((question, error) -> {
+            if (error != null) {
+                releaseUndelivered();
+            } else {
+                QuizMetrics.GENERATE_QUESTION.recordSince(start);
+            }
+        });
+        return next.future;
+    }
+
+    private synchronized void releaseUndelivered() {
+        // The failed question was never delivered, so give its slot back
+        if (!shutdown) {
+            reservedQuestions--;
+            refillBuffer();
+        }
+    }
+
+    // Cancels all buffered and in-flight generation work; called when the quiz ends
+    public synchronized void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        for (PendingQuestion pending : prefetchBuffer) {
+            pending.future.cancel(true);
+        }
+        prefetchBuffer.clear();
+    }
+
+    // Number of questions requested per chat completion; 1 disables batching
+    public synchronized void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // Fraction of questions (0 to 1) taken from the question bank when it has one for the topic
+    public void setCachedQuestionRatio(double ratio) {
+        this.cachedQuestionRatio = Math.max(0.0, Math.min(1.0, ratio));
+    }
+
+    private void refillBuffer() {
+        int depth = targetPrefetchDepth();
+        while (!shutdown && prefetchBuffer.size() < depth && reservedQuestions < questionLimit) {
+            scheduleBatch(Math.min(batchSize, questionLimit - reservedQuestions), RequestScheduler.Priority.PREFETCH);
+        }
+    }
+
+    private void scheduleFetch() {
+        scheduleBatch(1, RequestScheduler.Priority.USER_BLOCKING);
+    }
+
+    private void scheduleBatch(int count, RequestScheduler.Priority priority) {
+        List<PendingQuestion> slots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // This generator is the session the rate limiter shares requests fairly between
+            PendingQuestion slot = new PendingQuestion(new RequestScheduler.Ticket(this, priority));
+            slots.add(slot);
+            prefetchBuffer.add(slot);
+        }
+        reservedQuestions += count;
+
+        for (PendingQuestion slot : slots) {
+            slot.future.whenComplete((question, error) -> {
+                if (slot.future.isCancelled()) {
+                    slot.cancelDemand();
+                }
+            });
+        }
+        prefetchExecutor.execute(() -> startBatch(slots));
+    }
+
+    private void startBatch(List<PendingQuestion> slots) {
+        List<PendingQuestion> pendingSlots = new ArrayList<>(slots);
+        List<String> pendingTopics = reserveTopics(pendingSlots.size());
+        serveFromBank(pendingSlots, pendingTopics);
+        if (!pendingSlots.isEmpty()) {
+            requestBatch(pendingSlots, pendingTopics, 1, 0, System.nanoTime());
+        }
+    }
+
+    // Each question is demanded from the coalescer, which may answer it from a call shared with other
+    // sessions; questions that fail to parse or repeat an earlier one are re-requested together
+    private void requestBatch(List<PendingQuestion> pendingSlots, List<String> pendingTopics, int attempt,
+                              int escalation, long start) {
+        // Reserve the worst case up front, charge this session's share of what the provider reports,
+        // then return the reservation
+        ChatPrompt prompt = buildPrompt(difficulty, pendingTopics, attempt);
+        long reserved = prompt.estimatePromptTokens() + prompt.getMaxTokens();
+        if (!sessionBudget.tryReserve(reserved)) {
+            failSlots(pendingSlots, pendingTopics, new TokenBudget.ExceededException(
+                "Session token budget of " + sessionBudget.getLimit() + " tokens used up"));
+            return;
+        }
+        if (!dailyBudget.tryReserve(reserved)) {
+            sessionBudget.charge(-reserved);
+            failSlots(pendingSlots, pendingTopics, new TokenBudget.ExceededException(
+                "Daily token budget of " + dailyBudget.getLimit() + " tokens used up"));
+            return;
+        }
+        TokenUsageListener onUsage = (promptTokens, completionTokens) -> {
+            sessionBudget.charge(promptTokens + completionTokens);
+            dailyBudget.charge(promptTokens + completionTokens);
+        };
+
+        List<CompletableFuture<Throwable>> outcomes = new ArrayList<>();
+        for (int i = 0; i < pendingSlots.size(); i++) {
+            PendingQuestion slot = pendingSlots.get(i);
+            String topic = pendingTopics.get(i);
+            CompletableFuture<Question> demand = coalescer.request(difficulty, topic, escalation, attempt,
+                slot.ticket, slot::update, onUsage);
+            slot.setDemand(demand);
+            outcomes.add(demand.handleAsync((question, error) -> deliver(slot, topic, question, error), prefetchExecutor));
+        }
+
+        CompletableFuture.allOf(outcomes.toArray(new CompletableFuture<?>[0])).whenCompleteAsync((ignored, e) -> {
+            sessionBudget.charge(-reserved);
+            dailyBudget.charge(-reserved);
+            List<PendingQuestion> failedSlots = new ArrayList<>();
+            List<String> failedTopics = new ArrayList<>();
+            List<PendingQuestion> erroredSlots = new ArrayList<>();
+            List<String> erroredTopics = new ArrayList<>();
+            Throwable lastFailure = null;
+            Throwable lastError = null;
+            boolean parseFailed = false;
+            int delivered = 0;
+            for (int i = 0; i < pendingSlots.size(); i++) {
+                Throwable error = outcomes.get(i).join();
+                if (error == null) {
+                    delivered++;
+                } else if (error instanceof ResponseParseException) {
+                    failedSlots.add(pendingSlots.get(i));
+                    failedTopics.add(pendingTopics.get(i));
+                    parseFailed |= !(error instanceof DuplicateQuestionException);
+                    lastFailure = error;
+                } else {
+                    erroredSlots.add(pendingSlots.get(i));
+                    erroredTopics.add(pendingTopics.get(i));
+                    lastError = error;
+                }
+            }
+            if (delivered > 0) {
+                recordGenerationLatency(System.nanoTime() - start);
+            }
+            if (!erroredSlots.isEmpty()) {
+                failSlots(erroredSlots, erroredTopics, lastError);
+            }
+
+            if (failedSlots.isEmpty()) {
+                return;
+            }
+            if (attempt >= MAX_BATCH_ATTEMPTS || shutdown) {
+                failSlots(failedSlots, failedTopics, lastFailure);
+                return;
+            }
+            // A reply that failed to parse escalates the re-request to the next model tier;
+            // near-duplicates alone are asked for again from the same tier
+            requestBatch(failedSlots, failedTopics, attempt + 1, parseFailed ? escalation + 1 : escalation, start);
+        }, prefetchExecutor);
+    }
+
+    // Hands a generated question to its slot; returns why it could not, or null once delivered
+    private Throwable deliver(PendingQuestion slot, String topic, Question question, Throwable error) {
+        if (error == null && !sessionQuestions.addIfNovel(question)) {
+            // Another session's demand for the same topic can hand back a question this one already showed
+            QuizMetrics.recordDuplicateRejected();
+            error = new DuplicateQuestionException("Generated question was already shown this session",
+                question.getQuestionText());
+        }
+        if (error != null) {
+            error = unwrap(error);
+            if (error instanceof ResponseParseException) {
+                QuizMetrics.recordTopicResult(topic, false);
+            }
+            return error;
+        }
+        topicScheduler.complete(topic);
+        QuizMetrics.recordTopicResult(topic, true);
+        slot.future.complete(question);
+        return null;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    // Completes slots straight from the question bank, removing them from the lists still to be generated
+    private void serveFromBank(List<PendingQuestion> slots, List<String> topics) {
+        if (questionBank == null || cachedQuestionRatio <= 0) {
+            return;
+        }
+        for (int i = slots.size() - 1; i >= 0; i--) {
+            if (ThreadLocalRandom.current().nextDouble() >= cachedQuestionRatio) {
+                continue;
+            }
+            try {
+                Question cached = questionBank.randomQuestion(topics.get(i), difficulty, servedFromBank);
+                if (cached != null && sessionQuestions.addIfNovel(cached)) {
+                    slots.remove(i).future.complete(cached.withTopic(topics.get(i)));
+                    topicScheduler.complete(topics.remove(i));
+                }
+            } catch (IOException e) {
+                System.out.println("Question bank lookup failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    // The request for these topics; a re-request may be re-parsing a reply that was cut off, so it gets a larger cap
+    static ChatPrompt buildPrompt(DifficultyLevel difficulty, List<String> topics, int attempt) {
+        String level = difficulty.getDisplayName().toUpperCase();
+        String userMessage;
+        if (topics.size() == 1) {
+            userMessage = String.format(QUESTION_PROMPT_TEMPLATE, level, topics.get(0));
+        } else {
+            StringBuilder topicList = new StringBuilder();
+            for (int i = 0; i < topics.size(); i++) {
+                topicList.append(i + 1).append(". ").append(topics.get(i)).append('\n');
+            }
+            userMessage = String.format(BATCH_PROMPT_TEMPLATE, topics.size(), level, topicList);
+        }
+        int maxTokens = Math.min(MAX_TOKENS_PER_REQUEST, TokenUsageModel.maxTokens(difficulty, topics.size()) * attempt);
+        return new ChatPrompt(SYSTEM_MESSAGE, userMessage, maxTokens);
+    }
+
+    // Generation gave up on these slots, so fill them locally: a banked question for the topic if there is
+    // one, otherwise a bundled question. A bundled question keeps its own topic, so the requested one goes
+    // back to the scheduler to be dealt again. Slots are only failed once both are exhausted.
+    private void failSlots(List<PendingQuestion> slots, List<String> topics, Throwable error) {
+        boolean fallback = !shutdown && !(error instanceof CancellationException);
+        if (fallback) {
+            // Parse failures were already counted per topic as they happened, and budget refusals are not errors
+            if (!(error instanceof ResponseParseException) && !(error instanceof TokenBudget.ExceededException)) {
+                for (String topic : topics) {
+                    QuizMetrics.recordTopicResult(topic, false);
+                }
+            }
+            System.out.println("Question generation failed (" + error.getMessage() + "), serving local questions");
+        }
+        for (int i = 0; i < slots.size(); i++) {
+            PendingQuestion slot = slots.get(i);
+            String topic = topics.get(i);
+            Question banked = fallback ? bankedQuestion(topic) : null;
+            if (banked != null) {
+                topicScheduler.complete(topic);
+                slot.future.complete(banked.withTopic(topic));
+                continue;
+            }
+            releaseTopic(topic);
+            Question bundled = fallback ? bundledQuestion() : null;
+            if (bundled != null) {
+                slot.future.complete(bundled);
+            } else {
+                slot.future.completeExceptionally(error);
+            }
+        }
+    }
+
+    // Skips questions too close to one already shown this session
+    private Question bankedQuestion(String topic) {
+        if (questionBank != null) {
+            try {
+                Question cached;
+                while ((cached = questionBank.randomQuestion(topic, difficulty, servedFromBank)) != null) {
+                    if (sessionQuestions.addIfNovel(cached)) {
+                        return cached;
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Question bank lookup failed: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private Question bundledQuestion() {
+        Question bundled;
+        while ((bundled = FallbackQuestions.next(servedFallbacks)) != null) {
+            if (sessionQuestions.addIfNovel(bundled)) {
+                return bundled;
+            }
+        }
+        return null;
+    }
+
+    // Splits a batch reply into one "Q: ... Correct: X" block per question, keyed by the zero-based index of
+    // the topic its "Topic: N" line names. Blocks without a valid number, or repeating one, are left out so
+    // their topics are asked for again rather than filed under a neighbour's topic.
+    static Map<Integer, String> splitNumberedBlocks(String response, int topicCount) {
+        Map<Integer, String> blocks = new HashMap<>();
+        StringBuilder block = null;
+        int number = -1;
+        int pending = -1;
+        for (String line : response.split("\n")) {
+            String trimmed = line.trim();
+            Matcher topicLine = TOPIC_LINE.matcher(trimmed);
+            if (topicLine.find()) {
+                pending = parseTopicNumber(topicLine.group(1));
+            } else if (trimmed.startsWith("Q:")) {
+                addBlock(blocks, number, block, topicCount);
+                block = new StringBuilder(trimmed);
+                number = pending;
+                pending = -1;
+            } else if (block != null && !trimmed.isEmpty()) {
+                block.append('\n').append(trimmed);
+            }
+        }
+        addBlock(blocks, number, block, topicCount);
+        return blocks;
+    }
+
+    private static int parseTopicNumber(String digits) {
         try {
-            // Get a random unasked topic
-            String topic = getRandomUnaskedTopic();
-            if (topic == null) {
-                // If all topics have been asked, reset the tracking
-                askedTopics.clear();
-                topic = getRandomUnaskedTopic();
-            }
-            
-            String prompt = String.format(SYSTEM_PROMPT_TEMPLATE, difficulty.getDisplayName().toUpperCase(), topic);
-            String response = client.createChatCompletion(prompt);
-            System.out.println("AI Response:\n" + response);
-            
-            // Mark this topic as asked
-            askedTopics.add(topic);
-            
-            return parseResponse(response);
-        } catch (IOException e) {
-            String errorMsg = "Error generating question: " + e.getMessage();
-            showErrorDialog("API Error", errorMsg, null);
-            throw e;
-        }
-    }
-
-    private String getRandomUnaskedTopic() {
-        List<String> availableTopics = Arrays.stream(TOPICS)
-            .filter(topic -> !askedTopics.contains(topic))
-            .collect(Collectors.toList());
-        
-        if (availableTopics.isEmpty()) {
-            return null;
-        }
-        
-        Random random = new Random();
-        return availableTopics.get(random.nextInt(availableTopics.size()));
-    }
-
-    private void showErrorDialog(String title, String message, String details) {
-        JDialog dialog = new JDialog((Frame)null, title, true);
-        dialog.setLayout(new BorderLayout(10, 10));
-        
-        JPanel messagePanel = new JPanel();
-        messagePanel.setLayout(new BoxLayout(messagePanel, BoxLayout.Y_AXIS));
-        messagePanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        
-        JLabel messageLabel = new JLabel("<html><body style='width: 300px;'>" + message + "</body></html>");
-        messageLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
-        messagePanel.add(messageLabel);
-        
-        if (details != null && !details.isEmpty()) {
-            messagePanel.add(Box.createVerticalStrut(10));
-            JTextArea detailsArea = new JTextArea(details);
-            detailsArea.setEditable(false);
-            detailsArea.setLineWrap(true);
-            detailsArea.setWrapStyleWord(true);
-            detailsArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
-            
-            JScrollPane scrollPane = new JScrollPane(detailsArea);
-            scrollPane.setPreferredSize(new Dimension(300, 100));
-            scrollPane.setAlignmentX(Component.LEFT_ALIGNMENT);
-            messagePanel.add(scrollPane);
-        }
-        
-        dialog.add(messagePanel, BorderLayout.CENTER);
-        
-        JButton okButton = new JButton("OK");
-        okButton.addActionListener(e -> dialog.dispose());
-        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
-        buttonPanel.add(okButton);
-        dialog.add(buttonPanel, BorderLayout.SOUTH);
-        
-        dialog.pack();
-        dialog.setSize(Math.max(350, dialog.getWidth()), 
-                      Math.min(400, dialog.getHeight()));
-        dialog.setLocationRelativeTo(null);
-        dialog.setVisible(true);
-    }
-
-    private Question parseResponse(String response) throws Exception {
+            return Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void addBlock(Map<Integer, String> blocks, int number, StringBuilder block, int topicCount) {
+        if (block != null && number >= 1 && number <= topicCount) {
+            blocks.putIfAbsent(number - 1, block.toString());
+        }
+    }
+
+    // Topics are dealt up front, so concurrent prefetches and the questions of one batch pick different ones
+    private List<String> reserveTopics(int count) {
+        List<String> topics = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            topics.add(topicScheduler.next());
+        }
+        return topics;
+    }
+
+    private void releaseTopic(String topic) {
+        topicScheduler.release(topic);
+    }
+
+    private void recordTake() {
+        long now = System.nanoTime();
+        if (lastTakeNanos != 0) {
+            avgConsumeIntervalMillis = smooth(avgConsumeIntervalMillis, (now - lastTakeNanos) / 1_000_000.0);
+        }
+        lastTakeNanos = now;
+    }
+
+    private synchronized void recordGenerationLatency(long nanos) {
+        avgGenerationMillis = smooth(avgGenerationMillis, nanos / 1_000_000.0);
+    }
+
+    private static double smooth(double average, double sample) {
+        return average < 0 ? sample : average + LATENCY_SMOOTHING * (sample - average);
+    }
+
+    // Keep enough questions buffered to cover one generation round trip at the user's answering pace
+    private int targetPrefetchDepth() {
+        if (avgGenerationMillis < 0 || avgConsumeIntervalMillis < 0) {
+            return INITIAL_PREFETCH_DEPTH;
+        }
+        int depth = (int) Math.ceil(avgGenerationMillis / Math.max(1.0, avgConsumeIntervalMillis)) + 1;
+        return Math.max(MIN_PREFETCH_DEPTH, Math.min(MAX_PREFETCH_DEPTH, depth));
+    }
+
+    static Question parseResponse(String response) throws ResponseParseException {
+        long start = System.nanoTime();
         try {
             String[] parts = response.split("\n");
             if (parts.length < 6) {
@@ -164,9 +524,96 @@ public class QuestionGenerator {
 
             return new Question(questionText, options, correctIndex);
         } catch (Exception e) {
-            String errorMsg = "Failed to parse AI response: " + e.getMessage();
-            showErrorDialog("Parse Error", errorMsg, "Response received:\n" + response);
-            throw e;
+            QuizMetrics.recordParseFailure();
+            throw new ResponseParseException("Failed to parse AI response: " + e.getMessage(), response, e);
+        } finally {
+            QuizMetrics.PARSE.recordSince(start);
+        }
+    }
+
+    public interface ProgressListener {
+        // Called with the question text once its "Q:" line is complete, and again as each option line completes
+        void onProgress(String questionText, List<String> options);
+    }
+
+    // A buffered question slot; tracks the partially streamed text so a late listener can catch up
+    private static class PendingQuestion {
+        private final CompletableFuture<Question> future = new CompletableFuture<>();
+        private final RequestScheduler.Ticket ticket;
+        private String partialText = "";
+        private int publishedLines = 0;
+        private ProgressListener listener;
+        private CompletableFuture<Question> demand;
+
+        PendingQuestion(RequestScheduler.Ticket ticket) {
+            this.ticket = ticket;
+        }
+
+        // The coalescer demand currently generating this slot, withdrawn if the slot is abandoned
+        synchronized void setDemand(CompletableFuture<Question> demand) {
+            this.demand = demand;
+            if (future.isCancelled()) {
+                demand.cancel(true);
+            }
+        }
+
+        synchronized void cancelDemand() {
+            if (demand != null) {
+                demand.cancel(true);
+            }
+        }
+
+        synchronized void update(String text) {
+            partialText = text;
+            publish();
+        }
+
+        synchronized void setListener(ProgressListener listener) {
+            this.listener = listener;
+            publishedLines = 0;
+            publish();
+        }
+
+        private void publish() {
+            if (listener == null || future.isDone()) {
+                return;
+            }
+            // Only lines followed by a newline are complete
+            String[] lines = partialText.split("\n", -1);
+            int completeLines = Math.min(lines.length - 1, 5);
+            if (completeLines <= publishedLines || !lines[0].trim().startsWith("Q:")) {
+                return;
+            }
+            publishedLines = completeLines;
+
+            String questionText = lines[0].trim().substring(2).trim();
+            List<String> options = new ArrayList<>();
+            for (int i = 1; i < completeLines; i++) {
+                String option = lines[i].trim();
+                options.add(option.length() > 3 ? option.substring(3) : option);
+            }
+            listener.onProgress(questionText, options);
+        }
+    }
+
+    // Parse failures happen on prefetch threads, so the raw response travels with the error to the caller
+    public static class ResponseParseException extends Exception {
+        private final String response;
+
+        ResponseParseException(String message, String response, Throwable cause) {
+            super(message, cause);
+            this.response = response;
+        }
+
+        public String getResponse() {
+            return response;
+        }
+    }
+
+    // The question parsed, but repeats one already generated or shown, so it is asked for again from the same tier
+    static class DuplicateQuestionException extends ResponseParseException {
+        DuplicateQuestionException(String message, String response) {
+            super(message, response, null);
         }
     }
 } 
\ No newline at end of file
@@ -3,37 +3,45 @@ package com.quiz;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
 
-public class QuizFrame extends JFrame {
+public class QuizFrame extends JFrame implements QuizSession.Listener {
     private static final Color PRIMARY_COLOR = new Color(82, 86, 255);  // Bright indigo
     private static final Color NEXT_BUTTON_COLOR = new Color(255, 187, 0);  // Warm yellow
     private static final Color SUBMIT_BUTTON_COLOR = new Color(40, 167, 69); // Green
     private static final Color TIMER_WARNING_COLOR = new Color(220, 53, 69); // Red
     
-    private static final int TOTAL_QUESTIONS = 10;
+    static final int TOTAL_QUESTIONS = 10;
     private static final int TIME_PER_QUESTION = 60;
     
-    private QuestionGenerator questionGenerator;
-    private Question currentQuestion;
+    private QuizSession session;
+    private final QuizWarmup warmup;
     private JLabel questionLabel;
     private JRadioButton[] optionButtons;
     private JButton nextButton;
     private JButton submitButton;
     private JLabel timerLabel;
-    private Timer questionTimer;
-    private int timeLeft;
-    private int totalQuestions = 0;
-    private int correctAnswers = 0;
     private String userName;
-    private List<Question> attemptedQuestions = new ArrayList<>();
-    private List<Integer> userAnswers = new ArrayList<>();
     private ButtonGroup optionGroup;
 
     public QuizFrame(String userName, String apiKey, DifficultyLevel difficulty) {
+        this(userName, QuizWarmup.start(apiKey, difficulty, TOTAL_QUESTIONS), difficulty);
+    }
+
+    // Picks up the question generator the warm-up started for this difficulty
+    public QuizFrame(String userName, QuizWarmup warmup, DifficultyLevel difficulty) {
         this.userName = userName;
-        this.questionGenerator = new QuestionGenerator(apiKey, difficulty);
+        this.warmup = warmup;
+        QuestionGenerator questionGenerator;
+        try {
+            questionGenerator = warmup.generator();
+        } catch (RuntimeException e) {
+            showErrorDialog("API Error", e.getMessage(), null);
+            throw e;
+        }
+        this.session = new QuizSession(questionGenerator, this, TOTAL_QUESTIONS, TIME_PER_QUESTION);
+        session.recordHistory(AttemptHistory.getDefault(), userName);
         
         setTitle("Software Engineering Quiz - " + difficulty.getDisplayName() + " Level");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -43,7 +51,7 @@ public class QuizFrame extends JFrame {
         // Main Panel setup and UI initialization
         initializeUI();
         
-        // Load first question synchronously before showing the frame
+        // The first question is rendered through onQuestion once it arrives, so the frame shows straight away
         loadFirstQuestion();
     }
 
@@ -63,9 +71,7 @@ public class QuizFrame extends JFrame {
         // User Info Panel
         JPanel userInfoPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
         userInfoPanel.setOpaque(false);
-        ImageIcon userIconImg = new ImageIcon(getClass().getResource("/icons/user.png"));
-        Image scaledUserImg = userIconImg.getImage().getScaledInstance(20, 20, Image.SCALE_SMOOTH);
-        JLabel userIcon = new JLabel(new ImageIcon(scaledUserImg));
+        JLabel userIcon = new JLabel(RenderCache.icon("/icons/user.png", 20));
         userInfoPanel.add(userIcon);
         
         JLabel userLabel = new JLabel(userName);
@@ -76,9 +82,7 @@ public class QuizFrame extends JFrame {
         // Timer Panel
         JPanel timerPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
         timerPanel.setOpaque(false);
-        ImageIcon clockIconImg = new ImageIcon(getClass().getResource("/icons/clock.png"));
-        Image scaledClockImg = clockIconImg.getImage().getScaledInstance(24, 24, Image.SCALE_SMOOTH);
-        JLabel clockIcon = new JLabel(new ImageIcon(scaledClockImg));
+        JLabel clockIcon = new JLabel(RenderCache.icon("/icons/clock.png", 24));
         timerPanel.add(clockIcon);
         
         timerLabel = new JLabel(TIME_PER_QUESTION + "s");
@@ -142,6 +146,8 @@ public class QuizFrame extends JFrame {
                         }
                     }
                 }
+                // The button knows its own index, so there is no need to scan for the selected one
+                session.answer(clicked.isSelected() ? index : -1);
                 repaint();
             });
             
@@ -150,6 +156,7 @@ public class QuizFrame extends JFrame {
                 public void mouseClicked(MouseEvent e) {
                     if (e.getClickCount() == 2) {  // Double click
                         optionButtons[index].setSelected(false);
+                        session.answer(-1);
                         repaint();
                     }
                 }
@@ -245,97 +252,130 @@ public class QuizFrame extends JFrame {
         mainPanel.add(buttonsPanel, BorderLayout.SOUTH);
         
         add(mainPanel);
-        
-        // Set up timer
-        questionTimer = new Timer(1000, e -> {
-            timeLeft--;
+    }
+
+    @Override
+    public void onQuestionProgress(int questionNumber, String questionText, List<String> options) {
+        SwingUtilities.invokeLater(() -> showPartialQuestion(questionNumber, questionText, options));
+    }
+
+    @Override
+    public void onQuestion(int questionNumber, Question question) {
+        long ready = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            showQuestion(questionNumber, question);
+            if (questionNumber == 1) {
+                warmup.recordFirstQuestion();
+            }
+            // The repaint requested above is queued ahead of this, so it has been painted when this runs
+            SwingUtilities.invokeLater(() -> QuizMetrics.QUESTION_RENDER.recordSince(ready));
+        });
+    }
+
+    @Override
+    public void onTick(int timeLeft) {
+        SwingUtilities.invokeLater(() -> {
             timerLabel.setText(timeLeft + "s");
             if (timeLeft <= 10) {
                 timerLabel.setForeground(TIMER_WARNING_COLOR);
             }
-            if (timeLeft <= 0) {
-                handleTimeUp();
-            }
         });
     }
-    
-    private void loadFirstQuestion() {
-        try {
-            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-            Question question = questionGenerator.generateQuestion();
-            
-            if (question != null) {
-                currentQuestion = question;
-                totalQuestions++;
-                
-                // Update UI
-                questionLabel.setText("<html><body style='width: 500px'>" + 
-                    "Question " + totalQuestions + ": " + 
-                    currentQuestion.getQuestionText() + "</body></html>");
-                
-                String[] options = currentQuestion.getOptions();
-                for (int i = 0; i < 4; i++) {
-                    optionButtons[i].setText(options[i]);
-                    optionButtons[i].setSelected(false);
-                    optionButtons[i].setEnabled(true);
-                }
-                
-                nextButton.setEnabled(true);
-                
-                // Reset and start timer
-                timeLeft = TIME_PER_QUESTION;
-                timerLabel.setText(timeLeft + "s");
-                timerLabel.setForeground(Color.BLACK);
-                questionTimer.restart();
-                
-                setVisible(true);  // Show frame only after first question is loaded
-            } else {
-                throw new Exception("Failed to generate first question");
+
+    @Override
+    public void onQuestionFailed(Throwable error) {
+        SwingUtilities.invokeLater(() -> {
+            setCursor(Cursor.getDefaultCursor());
+            if (session.isFinished()) {
+                return;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            JOptionPane.showMessageDialog(
-                this,
-                "Failed to load the first question. Please try restarting the quiz.",
+            showGenerationError(error);
+            int choice = JOptionPane.showConfirmDialog(
+                QuizFrame.this,
+                "Failed to load question. Would you like to try again?",
                 "Error",
+                JOptionPane.YES_NO_OPTION,
                 JOptionPane.ERROR_MESSAGE
             );
-            System.exit(1);
-        } finally {
+            
+            if (choice == JOptionPane.YES_OPTION) {
+                setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+                session.retry();
+            } else {
+                showResults();
+            }
+        });
+    }
+
+    @Override
+    public void onAllQuestionsAnswered() {
+        SwingUtilities.invokeLater(() -> {
             setCursor(Cursor.getDefaultCursor());
-        }
+            nextButton.setEnabled(false);
+            int choice = JOptionPane.showConfirmDialog(
+                this,
+                "You have completed all questions. Would you like to submit the quiz?",
+                "Quiz Complete",
+                JOptionPane.YES_NO_OPTION
+            );
+            if (choice == JOptionPane.YES_OPTION) {
+                handleSubmit();
+            }
+        });
     }
     
-    private void handleTimeUp() {
-        questionTimer.stop();
-        // Save current answer (if any) before moving to next question
-        saveCurrentAnswer();
-        // Automatically move to next question
-        loadNextQuestion();
+    private void loadFirstQuestion() {
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        questionLabel.setText("Loading question...");
+        for (JRadioButton optionButton : optionButtons) {
+            optionButton.setText("");
+            optionButton.setEnabled(false);
+        }
+        nextButton.setEnabled(false);
+        session.start();
     }
-    
-    private void saveCurrentAnswer() {
-        int selectedAnswer = -1;
-        for (int i = 0; i < optionButtons.length; i++) {
-            if (optionButtons[i].isSelected()) {
-                selectedAnswer = i;
-                break;
-            }
+
+    private void showQuestion(int questionNumber, Question question) {
+        setCursor(Cursor.getDefaultCursor());
+        questionLabel.setText("<html><body style='width: 500px'>" + 
+            "Question " + questionNumber + ": " + 
+            question.getQuestionText() + "</body></html>");
+        
+        String[] options = question.getOptions();
+        for (int i = 0; i < 4; i++) {
+            optionButtons[i].setText(options[i]);
+            optionButtons[i].setSelected(false);
+            optionButtons[i].setEnabled(true);
         }
-        attemptedQuestions.add(currentQuestion);
-        userAnswers.add(selectedAnswer);
+        
+        nextButton.setEnabled(questionNumber < session.getTotalQuestions());
+        
+        timerLabel.setText(TIME_PER_QUESTION + "s");
+        timerLabel.setForeground(Color.BLACK);
     }
-    
+
+    private void showPartialQuestion(int questionNumber, String questionText, List<String> options) {
+        if (session.getQuestionNumber() >= questionNumber) {
+            return;  // the complete question is already showing
+        }
+        questionLabel.setText("<html><body style='width: 500px'>" + 
+            "Question " + questionNumber + ": " + 
+            questionText + "</body></html>");
+        for (int i = 0; i < 4; i++) {
+            optionButtons[i].setText(i < options.size() ? options.get(i) : "");
+            optionButtons[i].setSelected(false);
+            optionButtons[i].setEnabled(false);
+        }
+        nextButton.setEnabled(false);
+    }
+
     private void handleNextQuestion() {
-        saveCurrentAnswer();
-        loadNextQuestion();
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        session.next();
     }
     
     private void handleSubmit() {
-        // Save the current answer before submitting
-        saveCurrentAnswer();
-        
-        int attemptedCount = totalQuestions;
+        int attemptedCount = session.getQuestionNumber();
         if (attemptedCount < TOTAL_QUESTIONS) {
             int choice = JOptionPane.showConfirmDialog(
                 this,
@@ -364,96 +404,71 @@ public class QuizFrame extends JFrame {
         showResults();
     }
 
-    private void loadNextQuestion() {
-        if (totalQuestions >= TOTAL_QUESTIONS) {
-            nextButton.setEnabled(false);
-            int choice = JOptionPane.showConfirmDialog(
-                this,
-                "You have completed all questions. Would you like to submit the quiz?",
-                "Quiz Complete",
-                JOptionPane.YES_NO_OPTION
-            );
-            if (choice == JOptionPane.YES_OPTION) {
-                handleSubmit();
-            }
-            return;
-        }
+    private void showResults() {
+        int correctAnswers = session.submit();
+        
+        // Show results in new frame
+        dispose();
+        new ResultFrame(userName, correctAnswers, TOTAL_QUESTIONS, session.getAttemptedQuestions(), session.getUserAnswers(),
+            session.getWeightedScore(), session.getMaxWeightedScore(), session.getTopicBreakdown()).setVisible(true);
+    }
 
-        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-        SwingWorker<Question, Void> worker = new SwingWorker<>() {
-            @Override
-            protected Question doInBackground() throws Exception {
-                return questionGenerator.generateQuestion();
-            }
+    @Override
+    public void dispose() {
+        // Stop the session and any buffered question generation once the quiz window goes away
+        session.submit();
+        super.dispose();
+    }
 
-            @Override
-            protected void done() {
-                try {
-                    Question question = get();
-                    if (question != null) {
-                        currentQuestion = question;
-                        totalQuestions++;
-                        
-                        // Update UI
-                        questionLabel.setText("<html><body style='width: 500px'>" + 
-                            "Question " + totalQuestions + ": " + 
-                            currentQuestion.getQuestionText() + "</body></html>");
-                        
-                        String[] options = currentQuestion.getOptions();
-                        for (int i = 0; i < 4; i++) {
-                            optionButtons[i].setText(options[i]);
-                            optionButtons[i].setSelected(false);
-                            optionButtons[i].setEnabled(true);
-                        }
-                        
-                        nextButton.setEnabled(true);
-                        if (totalQuestions == TOTAL_QUESTIONS) {
-                            nextButton.setEnabled(false);
-                        }
-                        
-                        // Reset and start timer
-                        timeLeft = TIME_PER_QUESTION;
-                        timerLabel.setText(timeLeft + "s");
-                        timerLabel.setForeground(Color.BLACK);
-                        questionTimer.restart();
-                    } else {
-                        throw new Exception("Failed to generate question");
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();  // For debugging
-                    int choice = JOptionPane.showConfirmDialog(
-                        QuizFrame.this,
-                        "Failed to load question. Would you like to try again?",
-                        "Error",
-                        JOptionPane.YES_NO_OPTION,
-                        JOptionPane.ERROR_MESSAGE
-                    );
-                    
-                    if (choice == JOptionPane.YES_OPTION) {
-                        loadNextQuestion();
-                    } else {
-                        showResults();
-                    }
-                } finally {
-                    setCursor(Cursor.getDefaultCursor());
-                }
-            }
-        };
-        worker.execute();
+    private void showGenerationError(Throwable error) {
+        if (error instanceof QuestionGenerator.ResponseParseException) {
+            QuestionGenerator.ResponseParseException parseError = (QuestionGenerator.ResponseParseException) error;
+            showErrorDialog("Parse Error", parseError.getMessage(), "Response received:\n" + parseError.getResponse());
+        } else if (error instanceof IOException) {
+            showErrorDialog("API Error", "Error generating question: " + error.getMessage(), null);
+        } else {
+            showErrorDialog("Error", "Error generating question: " + error, null);
+        }
     }
 
-    private void showResults() {
-        questionTimer.stop();
-        // Calculate score
-        correctAnswers = 0;
-        for (int i = 0; i < attemptedQuestions.size(); i++) {
-            if (userAnswers.get(i) == attemptedQuestions.get(i).getCorrectOptionIndex()) {
-                correctAnswers++;
-            }
+    private void showErrorDialog(String title, String message, String details) {
+        JDialog dialog = new JDialog((Frame)null, title, true);
+        dialog.setLayout(new BorderLayout(10, 10));
+        
+        JPanel messagePanel = new JPanel();
+        messagePanel.setLayout(new BoxLayout(messagePanel, BoxLayout.Y_AXIS));
+        messagePanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        
+        JLabel messageLabel = new JLabel("<html><body style='width: 300px;'>" + message + "</body></html>");
+        messageLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        messagePanel.add(messageLabel);
+        
+        if (details != null && !details.isEmpty()) {
+            messagePanel.add(Box.createVerticalStrut(10));
+            JTextArea detailsArea = new JTextArea(details);
+            detailsArea.setEditable(false);
+            detailsArea.setLineWrap(true);
+            detailsArea.setWrapStyleWord(true);
+            detailsArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
+            
+            JScrollPane scrollPane = new JScrollPane(detailsArea);
+            scrollPane.setPreferredSize(new Dimension(300, 100));
+            scrollPane.setAlignmentX(Component.LEFT_ALIGNMENT);
+            messagePanel.add(scrollPane);
         }
         
-        // Show results in new frame
-        dispose();
-        new ResultFrame(userName, correctAnswers, TOTAL_QUESTIONS, attemptedQuestions, userAnswers).setVisible(true);
+        dialog.add(messagePanel, BorderLayout.CENTER);
+        
+        JButton okButton = new JButton("OK");
+        okButton.addActionListener(e -> dialog.dispose());
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(okButton);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        
+        dialog.pack();
+        dialog.setSize(Math.max(350, dialog.getWidth()), 
+                      Math.min(400, dialog.getHeight()));
+        dialog.setLocationRelativeTo(null);
+        dialog.setVisible(true);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,248 @@
+package com.quiz;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide metrics for the question pipeline, published as MBeans under the "com.quiz" domain:
+//   com.quiz:type=Latency,name=<stage>  latency histograms for each stage
+//   com.quiz:type=Pipeline              parse failures, retries, 429s, rejected duplicates, token usage, how
+//                                       many question demands shared upstream calls, connection reuse
+//                                       and hedging
+//   com.quiz:type=Topic,name=<topic>    generation attempts and errors per topic
+// Everything is recorded with lock-free adders, so call sites can record unconditionally.
+public class QuizMetrics implements QuizMetricsMBean {
+    private static final String DOMAIN = "com.quiz";
+
+    // Request sent until the response body is fully read
+    static final LatencyHistogram HTTP_ROUND_TRIP = new LatencyHistogram();
+    // Request sent until the response headers start arriving
+    static final LatencyHistogram TIME_TO_FIRST_BYTE = new LatencyHistogram();
+    static final LatencyHistogram PARSE = new LatencyHistogram();
+    // Question asked for until it is handed to the caller, including time spent in the prefetch buffer
+    static final LatencyHistogram GENERATE_QUESTION = new LatencyHistogram();
+    // Question handed to the UI until the frame has painted it
+    static final LatencyHistogram QUESTION_RENDER = new LatencyHistogram();
+    // One repaint of a frame's gradient background
+    static final LatencyHistogram BACKGROUND_PAINT = new LatencyHistogram();
+    // Login confirmed until the quiz window shows its first question
+    static final LatencyHistogram LOGIN_TO_FIRST_QUESTION = new LatencyHistogram();
+    // Time a request waited in the rate limiter, for user-blocking and for background requests
+    static final LatencyHistogram SCHEDULER_WAIT_INTERACTIVE = new LatencyHistogram();
+    static final LatencyHistogram SCHEDULER_WAIT_BACKGROUND = new LatencyHistogram();
+
+    private static final QuizMetrics INSTANCE = new QuizMetrics();
+    private static final Map<String, TopicStats> topics = new ConcurrentHashMap<>();
+
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder duplicatesRejected = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+    private final LongAdder usageReports = new LongAdder();
+    private final LongAdder questionDemands = new LongAdder();
+    private final LongAdder joinedDemands = new LongAdder();
+    private final LongAdder upstreamCalls = new LongAdder();
+
+    static {
+        register("type=Latency,name=HttpRoundTrip", HTTP_ROUND_TRIP);
+        register("type=Latency,name=TimeToFirstByte", TIME_TO_FIRST_BYTE);
+        register("type=Latency,name=Parse", PARSE);
+        register("type=Latency,name=GenerateQuestion", GENERATE_QUESTION);
+        register("type=Latency,name=QuestionRender", QUESTION_RENDER);
+        register("type=Latency,name=BackgroundPaint", BACKGROUND_PAINT);
+        register("type=Latency,name=LoginToFirstQuestion", LOGIN_TO_FIRST_QUESTION);
+        register("type=Latency,name=SchedulerWaitInteractive", SCHEDULER_WAIT_INTERACTIVE);
+        register("type=Latency,name=SchedulerWaitBackground", SCHEDULER_WAIT_BACKGROUND);
+        register("type=Pipeline", INSTANCE);
+    }
+
+    private QuizMetrics() {
+    }
+
+    public static QuizMetrics get() {
+        return INSTANCE;
+    }
+
+    static void recordParseFailure() {
+        INSTANCE.parseFailures.increment();
+    }
+
+    static void recordRetry() {
+        INSTANCE.retries.increment();
+    }
+
+    static void recordRateLimited() {
+        INSTANCE.rateLimited.increment();
+    }
+
+    static void recordDuplicateRejected() {
+        INSTANCE.duplicatesRejected.increment();
+    }
+
+    static void recordTokenUsage(int prompt, int completion) {
+        INSTANCE.promptTokens.add(prompt);
+        INSTANCE.completionTokens.add(completion);
+        INSTANCE.usageReports.increment();
+    }
+
+    // joined is true when the demand shared a question already being generated for another
+    static void recordQuestionDemand(boolean joined) {
+        INSTANCE.questionDemands.increment();
+        if (joined) {
+            INSTANCE.joinedDemands.increment();
+        }
+    }
+
+    static void recordUpstreamCall() {
+        INSTANCE.upstreamCalls.increment();
+    }
+
+    static void recordTopicResult(String topic, boolean success) {
+        TopicStats stats = topics.computeIfAbsent(topic, t -> {
+            TopicStats created = new TopicStats();
+            register("type=Topic,name=" + ObjectName.quote(t), created);
+            return created;
+        });
+        stats.attempts.increment();
+        if (!success) {
+            stats.errors.increment();
+        }
+    }
+
+    @Override
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    @Override
+    public long getDuplicatesRejected() {
+        return duplicatesRejected.sum();
+    }
+
+    @Override
+    public long getPromptTokens() {
+        return promptTokens.sum();
+    }
+
+    @Override
+    public long getCompletionTokens() {
+        return completionTokens.sum();
+    }
+
+    @Override
+    public long getTotalTokens() {
+        return promptTokens.sum() + completionTokens.sum();
+    }
+
+    @Override
+    public long getUsageReports() {
+        return usageReports.sum();
+    }
+
+    @Override
+    public long getQuestionDemands() {
+        return questionDemands.sum();
+    }
+
+    @Override
+    public long getJoinedDemands() {
+        return joinedDemands.sum();
+    }
+
+    @Override
+    public long getUpstreamCalls() {
+        return upstreamCalls.sum();
+    }
+
+    @Override
+    public long getTlsHandshakes() {
+        return HttpTransport.stats().getTlsHandshakes();
+    }
+
+    @Override
+    public long getConnectionsAcquired() {
+        return HttpTransport.stats().getConnectionsAcquired();
+    }
+
+    @Override
+    public long getConnectionsReused() {
+        return HttpTransport.stats().getConnectionsReused();
+    }
+
+    @Override
+    public long getHedgesFired() {
+        HedgingPolicy policy = HedgingPolicy.getDefault();
+        return policy != null ? policy.getHedgesFired() : 0;
+    }
+
+    @Override
+    public long getHedgesWon() {
+        HedgingPolicy policy = HedgingPolicy.getDefault();
+        return policy != null ? policy.getHedgesWon() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("question latency %s; HTTP round trip %s; %d parse failures, %d retries, %d tokens; "
+                + "%d question demands in %d upstream calls",
+            GENERATE_QUESTION, HTTP_ROUND_TRIP, getParseFailures(), getRetries(), getTotalTokens(),
+            getQuestionDemands(), getUpstreamCalls());
+    }
+
+    private static void register(String properties, Object mbean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(mbean, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Failed to register metrics " + properties + ": " + e.getMessage());
+        }
+    }
+
+    public interface TopicStatsMBean {
+        long getAttempts();
+
+        long getErrors();
+
+        double getErrorRate();
+    }
+
+    public static class TopicStats implements TopicStatsMBean {
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        @Override
+        public long getAttempts() {
+            return attempts.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public double getErrorRate() {
+            long n = attempts.sum();
+            return n == 0 ? 0.0 : (double) errors.sum() / n;
+        }
+    }
+}
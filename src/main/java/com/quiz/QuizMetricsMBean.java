@@ -0,0 +1,43 @@
+package com.quiz;
+
+// JMX view of the pipeline counters kept by QuizMetrics
+public interface QuizMetricsMBean {
+    long getParseFailures();
+
+    long getRetries();
+
+    // 429 responses from the provider, each of which slowed down its API key's rate limiter
+    long getRateLimited();
+
+    // Generated questions dropped as near-duplicates of earlier ones
+    long getDuplicatesRejected();
+
+    long getPromptTokens();
+
+    long getCompletionTokens();
+
+    long getTotalTokens();
+
+    // Completions that reported a usage block
+    long getUsageReports();
+
+    // Questions asked of the request coalescer, and how many of them shared one already being generated
+    long getQuestionDemands();
+
+    long getJoinedDemands();
+
+    // Chat completions the coalescer sent for those demands
+    long getUpstreamCalls();
+
+    // Shared HTTP transport: TLS handshakes, and requests that got a pooled connection
+    long getTlsHandshakes();
+
+    long getConnectionsAcquired();
+
+    long getConnectionsReused();
+
+    // Hedged requests sent, and how many of them beat the original; both 0 while hedging is off
+    long getHedgesFired();
+
+    long getHedgesWon();
+}
@@ -0,0 +1,261 @@
+package com.quiz;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// UI-independent quiz engine: question flow, answers, the per-question countdown and scoring.
+// All state is guarded by the session's monitor, and every session shares one small timer pool,
+// so many sessions can run side by side in one JVM without a display.
+public class QuizSession {
+    public static final int DEFAULT_TOTAL_QUESTIONS = 10;
+    public static final int DEFAULT_TIME_PER_QUESTION = 60;
+
+    private static final ScheduledExecutorService timer = Executors.newScheduledThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+            Thread thread = new Thread(runnable, "quiz-session-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    // Callbacks arrive on timer or HTTP threads and must not block
+    public interface Listener {
+        void onQuestionProgress(int questionNumber, String questionText, List<String> options);
+
+        void onQuestion(int questionNumber, Question question);
+
+        void onTick(int timeLeft);
+
+        void onQuestionFailed(Throwable error);
+
+        // The last question has been answered or timed out; the quiz is ready to submit
+        void onAllQuestionsAnswered();
+    }
+
+    private final QuestionGenerator questionGenerator;
+    private final Listener listener;
+    private final int totalQuestions;
+    private final int timePerQuestion;
+
+    private final List<Question> attemptedQuestions = new ArrayList<>();
+    private final ScoreCard scoreCard;
+    private Question currentQuestion;
+    private int questionNumber = 0;
+    private int selectedAnswer = -1;
+    private boolean currentRecorded = true;
+    private int timeLeft;
+    private ScheduledFuture<?> tickTask;
+    private CompletableFuture<Question> pendingQuestion;
+    private boolean finished = false;
+    private long shownAt;
+    private AttemptHistory history;
+    private String userName;
+
+    public QuizSession(QuestionGenerator questionGenerator, Listener listener) {
+        this(questionGenerator, listener, DEFAULT_TOTAL_QUESTIONS, DEFAULT_TIME_PER_QUESTION);
+    }
+
+    public QuizSession(QuestionGenerator questionGenerator, Listener listener, int totalQuestions, int timePerQuestion) {
+        this.questionGenerator = questionGenerator;
+        this.listener = listener;
+        this.totalQuestions = totalQuestions;
+        this.timePerQuestion = timePerQuestion;
+        this.scoreCard = new ScoreCard(totalQuestions, questionGenerator.getDifficulty(),
+            (int) TimeUnit.SECONDS.toMillis(timePerQuestion));
+    }
+
+    // Saves every answered question to the history under the given user; null history turns it off
+    public synchronized void recordHistory(AttemptHistory history, String userName) {
+        this.history = history;
+        this.userName = userName;
+    }
+
+    // Loads the first question; the returned future completes once it is on screen
+    public synchronized CompletableFuture<Question> start() {
+        return loadNext();
+    }
+
+    // Records the option currently chosen for the displayed question, or -1 for none
+    public synchronized void answer(int option) {
+        selectedAnswer = option;
+    }
+
+    // Moves past the current question, keeping its answer
+    public synchronized void next() {
+        if (finished || pendingQuestion != null) {
+            return;
+        }
+        recordCurrentAnswer();
+        if (questionNumber >= totalQuestions) {
+            stopTimer();
+            listener.onAllQuestionsAnswered();
+            return;
+        }
+        loadNext();
+    }
+
+    public synchronized void timeUp() {
+        next();
+    }
+
+    // Asks again for a question after onQuestionFailed
+    public synchronized void retry() {
+        if (!finished && pendingQuestion == null) {
+            loadNext();
+        }
+    }
+
+    // Ends the session, keeping the answer to the displayed question, and returns the score
+    public synchronized int submit() {
+        if (!finished) {
+            finished = true;
+            recordCurrentAnswer();
+            stopTimer();
+            if (pendingQuestion != null) {
+                pendingQuestion.cancel(true);
+                pendingQuestion = null;
+            }
+            questionGenerator.shutdown();
+            if (history != null) {
+                try {
+                    history.flush();
+                } catch (IOException e) {
+                    System.out.println("Failed to save attempt history: " + e.getMessage());
+                }
+            }
+        }
+        return getScore();
+    }
+
+    public synchronized int getScore() {
+        return scoreCard.getCorrect();
+    }
+
+    // Difficulty- and speed-weighted score; see ScoreCard
+    public synchronized double getWeightedScore() {
+        return scoreCard.getWeightedScore();
+    }
+
+    public synchronized double getMaxWeightedScore() {
+        return scoreCard.getMaxWeightedScore();
+    }
+
+    // Correct and attempted counts per topic
+    public synchronized Map<String, int[]> getTopicBreakdown() {
+        return scoreCard.getTopicBreakdown();
+    }
+
+    public synchronized int getQuestionNumber() {
+        return questionNumber;
+    }
+
+    public int getTotalQuestions() {
+        return totalQuestions;
+    }
+
+    public synchronized int getTimeLeft() {
+        return timeLeft;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized List<Question> getAttemptedQuestions() {
+        return Collections.unmodifiableList(new ArrayList<>(attemptedQuestions));
+    }
+
+    public synchronized List<Integer> getUserAnswers() {
+        List<Integer> answers = new ArrayList<>(scoreCard.getCount());
+        for (int i = 0; i < scoreCard.getCount(); i++) {
+            answers.add(scoreCard.getAnswer(i));
+        }
+        return Collections.unmodifiableList(answers);
+    }
+
+    private void recordCurrentAnswer() {
+        if (currentRecorded) {
+            return;
+        }
+        int responseMillis = (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - shownAt);
+        attemptedQuestions.add(currentQuestion);
+        scoreCard.record(currentQuestion, selectedAnswer, responseMillis);
+        currentRecorded = true;
+        if (history != null) {
+            try {
+                history.append(userName, currentQuestion.getTopic(), questionGenerator.getDifficulty(), selectedAnswer,
+                    currentQuestion.isCorrectAnswer(selectedAnswer), responseMillis);
+            } catch (IOException e) {
+                System.out.println("Failed to record attempt: " + e.getMessage());
+            }
+        }
+    }
+
+    private CompletableFuture<Question> loadNext() {
+        // The countdown is paused while the next question loads
+        stopTimer();
+        int number = questionNumber + 1;
+        CompletableFuture<Question> request = questionGenerator.nextQuestion(
+            (text, options) -> listener.onQuestionProgress(number, text, options));
+        pendingQuestion = request;
+
+        CompletableFuture<Question> shown = new CompletableFuture<>();
+        request.whenComplete((question, error) -> {
+            Throwable failure = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (showQuestion(request, question, failure)) {
+                shown.complete(question);
+            } else {
+                shown.completeExceptionally(failure != null ? failure : new IllegalStateException("Quiz session ended"));
+            }
+        });
+        return shown;
+    }
+
+    private boolean showQuestion(CompletableFuture<Question> request, Question question, Throwable error) {
+        synchronized (this) {
+            if (request != pendingQuestion || finished) {
+                return false;
+            }
+            pendingQuestion = null;
+            if (error == null && question != null) {
+                currentQuestion = question;
+                questionNumber++;
+                selectedAnswer = -1;
+                currentRecorded = false;
+                shownAt = System.nanoTime();
+                timeLeft = timePerQuestion;
+                tickTask = timer.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+                listener.onQuestion(questionNumber, question);
+                return true;
+            }
+        }
+        listener.onQuestionFailed(error != null ? error : new IllegalStateException("Failed to generate question"));
+        return false;
+    }
+
+    private synchronized void tick() {
+        if (finished || tickTask == null) {
+            return;
+        }
+        timeLeft--;
+        listener.onTick(timeLeft);
+        if (timeLeft <= 0) {
+            timeUp();
+        }
+    }
+
+    private void stopTimer() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.quiz;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Work started while the user is still on the login and rules screens. The API connection and codec
+// classes are warmed as soon as the login screen opens, and the question generator (and with it the
+// first questions) is started once a difficulty is chosen, so the quiz opens on a question that is
+// already there.
+public class QuizWarmup {
+    private static final AtomicBoolean transportWarmed = new AtomicBoolean(false);
+    private static final ExecutorService warmupExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quiz-warmup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long loginTime = System.nanoTime();
+    private final CompletableFuture<QuestionGenerator> generator;
+
+    private QuizWarmup(CompletableFuture<QuestionGenerator> generator) {
+        this.generator = generator;
+    }
+
+    // Only the first call does anything
+    public static void warmTransport() {
+        if (transportWarmed.compareAndSet(false, true)) {
+            warmupExecutor.execute(OpenRouterClient::warmUp);
+        }
+    }
+
+    // Starts generating questions for the chosen difficulty in the background
+    public static QuizWarmup start(String apiKey, DifficultyLevel difficulty, int questionLimit) {
+        warmTransport();
+        return new QuizWarmup(CompletableFuture.supplyAsync(
+            () -> new QuestionGenerator(apiKey, difficulty, questionLimit), warmupExecutor));
+    }
+
+    // Waits for the generator if it is still being set up; rethrows its construction failure
+    public QuestionGenerator generator() {
+        try {
+            return generator.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    public void recordFirstQuestion() {
+        QuizMetrics.LOGIN_TO_FIRST_QUESTION.recordSince(loginTime);
+    }
+}
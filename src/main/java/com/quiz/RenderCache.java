@@ -0,0 +1,142 @@
+package com.quiz;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Pre-rendered backgrounds and icons shared by every frame. Images are created compatible with the
+// screen, so Java2D keeps an accelerated copy and repaints become plain blits. Everything is sized in
+// device pixels for the scale of the Graphics being painted, so HiDPI screens get sharp output.
+// Only touched from the event dispatch thread.
+public class RenderCache {
+    private static final int MAX_BACKGROUNDS = 8;
+
+    // Least recently used backgrounds are dropped first; a resize only leaves a few sizes behind
+    private static final Map<String, BufferedImage> backgrounds = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > MAX_BACKGROUNDS;
+        }
+    };
+    private static final Map<String, BufferedImage> decodedIcons = new HashMap<>();
+    private static final Map<String, BufferedImage> scaledIcons = new HashMap<>();
+
+    private RenderCache() {
+    }
+
+    // Diagonal gradient from start to end over the given background color, w x h logical pixels
+    static BufferedImage gradient(Graphics2D g, int w, int h, Color background, Color start, Color end) {
+        double scale = scaleOf(g);
+        int deviceW = (int) Math.ceil(w * scale);
+        int deviceH = (int) Math.ceil(h * scale);
+        String key = deviceW + "x" + deviceH + "|" + background.getRGB() + "|" + start.getRGB() + "|" + end.getRGB();
+        BufferedImage image = backgrounds.get(key);
+        if (image == null) {
+            image = compatibleImage(g, deviceW, deviceH, Transparency.OPAQUE);
+            Graphics2D ig = image.createGraphics();
+            ig.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            ig.setColor(background);
+            ig.fillRect(0, 0, deviceW, deviceH);
+            ig.setPaint(new GradientPaint(0, 0, start, deviceW, deviceH, end));
+            ig.fillRect(0, 0, deviceW, deviceH);
+            ig.dispose();
+            backgrounds.put(key, image);
+        }
+        return image;
+    }
+
+    // Icon decoded once from the classpath and scaled to size x size logical pixels on first paint at each scale
+    public static Icon icon(String resource, int size) {
+        return new Icon() {
+            @Override
+            public void paintIcon(Component c, Graphics g, int x, int y) {
+                Graphics2D g2d = (Graphics2D) g;
+                BufferedImage image = scaledIcon(g2d, resource, size);
+                if (image != null) {
+                    g2d.drawImage(image, x, y, size, size, null);
+                }
+            }
+
+            @Override
+            public int getIconWidth() {
+                return size;
+            }
+
+            @Override
+            public int getIconHeight() {
+                return size;
+            }
+        };
+    }
+
+    private static BufferedImage scaledIcon(Graphics2D g, String resource, int size) {
+        int deviceSize = (int) Math.ceil(size * scaleOf(g));
+        String key = resource + "@" + deviceSize;
+        BufferedImage scaled = scaledIcons.get(key);
+        if (scaled == null) {
+            BufferedImage source = decodedIcon(resource);
+            if (source == null) {
+                return null;
+            }
+            scaled = downscale(g, source, deviceSize);
+            scaledIcons.put(key, scaled);
+        }
+        return scaled;
+    }
+
+    private static BufferedImage decodedIcon(String resource) {
+        if (!decodedIcons.containsKey(resource)) {
+            BufferedImage image = null;
+            try (InputStream in = RenderCache.class.getResourceAsStream(resource)) {
+                if (in != null) {
+                    image = ImageIO.read(in);
+                }
+            } catch (IOException e) {
+                System.out.println("Failed to load icon " + resource + ": " + e.getMessage());
+            }
+            decodedIcons.put(resource, image);
+        }
+        return decodedIcons.get(resource);
+    }
+
+    // Halves the image with bilinear filtering until close to the target, which looks as smooth as
+    // getScaledInstance(SCALE_SMOOTH) at a fraction of the cost
+    private static BufferedImage downscale(Graphics2D g, BufferedImage source, int size) {
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        do {
+            w = Math.max(size, w / 2);
+            h = Math.max(size, h / 2);
+            BufferedImage next = compatibleImage(g, w, h, Transparency.TRANSLUCENT);
+            Graphics2D ig = next.createGraphics();
+            ig.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            ig.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            ig.drawImage(current, 0, 0, w, h, null);
+            ig.dispose();
+            current = next;
+        } while (w > size || h > size);
+        return current;
+    }
+
+    private static BufferedImage compatibleImage(Graphics2D g, int w, int h, int transparency) {
+        GraphicsConfiguration config = g.getDeviceConfiguration();
+        if (config != null && config.getDevice().getType() != GraphicsDevice.TYPE_PRINTER) {
+            return config.createCompatibleImage(Math.max(1, w), Math.max(1, h), transparency);
+        }
+        int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        return new BufferedImage(Math.max(1, w), Math.max(1, h), type);
+    }
+
+    private static double scaleOf(Graphics2D g) {
+        AffineTransform transform = g.getTransform();
+        return Math.max(1.0, Math.max(Math.abs(transform.getScaleX()), Math.abs(transform.getScaleY())));
+    }
+}
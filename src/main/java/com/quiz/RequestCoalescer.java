@@ -0,0 +1,381 @@
+package com.quiz;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Shares question generation between the sessions of one process. Demands for a question on the same
+// difficulty and topic that overlap in time join one flight (single flight), and the flights that start
+// within a short window are combined into one multi-question chat completion. Each reply is parsed and
+// checked for duplicates once, then fanned out to every session waiting on it, so upstream calls grow
+// with the distinct topics in demand rather than with the number of sessions. The window is
+// -Dquiz.coalesce.windowMillis (0 sends at once, still single-flight); a user-blocking demand ends the
+// window early. A call is scheduled at the priority of its most urgent demand, and follows any later
+// promotion of its demands. One coalescer is shared per API key.
+public class RequestCoalescer {
+    private static final long WINDOW_MILLIS = Long.getLong("quiz.coalesce.windowMillis", 20);
+    private static final int MAX_QUESTIONS_PER_CALL = Integer.getInteger("quiz.coalesce.maxQuestions", 8);
+
+    private static final Map<String, RequestCoalescer> coalescers = new HashMap<>();
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "request-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ModelRouter router;
+    private final NearDuplicateIndex generatedQuestions;
+    private final QuestionBank questionBank;
+    private final Map<Key, Flight> flights = new HashMap<>();
+    private final List<Flight> waiting = new ArrayList<>();
+    private boolean flushScheduled = false;
+
+    public RequestCoalescer(ModelRouter router, NearDuplicateIndex generatedQuestions, QuestionBank questionBank) {
+        this.router = router;
+        this.generatedQuestions = generatedQuestions;
+        this.questionBank = questionBank;
+    }
+
+    public static synchronized RequestCoalescer forApiKey(String apiKey) {
+        return coalescers.computeIfAbsent(apiKey, key -> new RequestCoalescer(ModelRouter.forApiKey(key),
+            NearDuplicateIndex.getDefault(), QuestionBank.getDefault()));
+    }
+
+    // A new question on the topic. escalation is how many times this demand already failed to parse and
+    // attempt how many calls it has made; the ticket gives its session and priority. onPartial receives
+    // the question's text as it streams in and onUsage this demand's share of the tokens. Cancelling the
+    // future withdraws the demand, and cancels the call once no session is waiting on any of its questions.
+    public CompletableFuture<Question> request(DifficultyLevel difficulty, String topic, int escalation, int attempt,
+                                               RequestScheduler.Ticket ticket, Consumer<String> onPartial,
+                                               TokenUsageListener onUsage) {
+        Demand demand = new Demand(ticket, onPartial, onUsage);
+        Flight flight;
+        String partial;
+        synchronized (this) {
+            Key key = new Key(difficulty, topic, escalation);
+            flight = flights.get(key);
+            boolean joined = flight != null;
+            if (!joined) {
+                flight = new Flight(key);
+                flights.put(key, flight);
+                waiting.add(flight);
+                scheduleFlush();
+            }
+            flight.demands.add(demand);
+            flight.attempt = Math.max(flight.attempt, attempt);
+            if (flight.call != null) {
+                ticket.addFollower(flight.call.ticket);
+            } else if (ticket.getPriority() == RequestScheduler.Priority.USER_BLOCKING) {
+                timer.execute(this::flush);
+            }
+            partial = flight.partial;
+            QuizMetrics.recordQuestionDemand(joined);
+        }
+        if (!partial.isEmpty()) {
+            onPartial.accept(partial);
+        }
+        Flight joinedFlight = flight;
+        demand.future.whenComplete((question, error) -> {
+            if (demand.future.isCancelled()) {
+                withdraw(joinedFlight);
+            }
+        });
+        return demand.future;
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        if (WINDOW_MILLIS > 0) {
+            timer.schedule(this::flush, WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            timer.execute(this::flush);
+        }
+    }
+
+    // Sends the flights gathered during the window, one call per difficulty and tier
+    private void flush() {
+        List<List<Flight>> calls = new ArrayList<>();
+        synchronized (this) {
+            flushScheduled = false;
+            Map<Key, List<Flight>> groups = new LinkedHashMap<>();
+            for (Flight flight : waiting) {
+                Key group = new Key(flight.key.difficulty, null, flight.key.escalation);
+                groups.computeIfAbsent(group, k -> new ArrayList<>()).add(flight);
+            }
+            waiting.clear();
+            for (List<Flight> group : groups.values()) {
+                // The most urgent questions go first in the prompt, so they also finish streaming first
+                group.sort(Comparator.comparingInt(Flight::priority));
+                for (int i = 0; i < group.size(); i += MAX_QUESTIONS_PER_CALL) {
+                    calls.add(new ArrayList<>(group.subList(i, Math.min(group.size(), i + MAX_QUESTIONS_PER_CALL))));
+                }
+            }
+        }
+        for (List<Flight> call : calls) {
+            try {
+                send(call);
+            } catch (RuntimeException e) {
+                complete(new Call(call, null), null, null, null, e);
+            }
+        }
+    }
+
+    private void send(List<Flight> calledFlights) {
+        Key first = calledFlights.get(0).key;
+        DifficultyLevel difficulty = first.difficulty;
+        List<String> topics = new ArrayList<>();
+        int attempt = 1;
+        Call call;
+        synchronized (this) {
+            // Fairness is charged to the session behind the most urgent question
+            Demand lead = calledFlights.get(0).demands.get(0);
+            call = new Call(calledFlights, new RequestScheduler.Ticket(lead.ticket.getFlow(),
+                RequestScheduler.Priority.BULK));
+            for (Flight flight : calledFlights) {
+                topics.add(flight.key.topic);
+                attempt = Math.max(attempt, flight.attempt);
+                flight.call = call;
+                for (Demand demand : flight.demands) {
+                    demand.ticket.addFollower(call.ticket);
+                }
+            }
+        }
+        ChatPrompt prompt = QuestionGenerator.buildPrompt(difficulty, topics, attempt);
+        ModelRouter.Route route = router.select(first.escalation);
+        QuizMetrics.recordUpstreamCall();
+
+        StringBuilder received = new StringBuilder();
+        CompletableFuture<String> request = route.streamChatCompletionAsync(prompt, call.ticket, token -> {
+            received.append(token);
+            if (token.indexOf('\n') >= 0) {
+                String text = received.toString();
+                Map<Integer, String> blocks = topics.size() == 1 ? Map.of(0, text)
+                    : QuestionGenerator.splitNumberedBlocks(text, topics.size());
+                for (Map.Entry<Integer, String> block : blocks.entrySet()) {
+                    publishPartial(calledFlights.get(block.getKey()), block.getValue());
+                }
+            }
+        }, (promptTokens, completionTokens) -> {
+            TokenUsageModel.record(difficulty, topics.size(), completionTokens, prompt.getMaxTokens());
+            shareUsage(call, promptTokens, completionTokens);
+        });
+        synchronized (this) {
+            call.request = request;
+            cancelIfAbandoned(call);
+        }
+        request.whenCompleteAsync((response, error) -> complete(call, route, difficulty, response, error),
+            QuestionGenerator.prefetchExecutor);
+    }
+
+    private void publishPartial(Flight flight, String text) {
+        List<Demand> demands;
+        synchronized (this) {
+            flight.partial = text;
+            demands = new ArrayList<>(flight.demands);
+        }
+        for (Demand demand : demands) {
+            demand.onPartial.accept(text);
+        }
+    }
+
+    // Every session that waited on the call pays an equal share of it
+    private void shareUsage(Call call, int promptTokens, int completionTokens) {
+        List<Demand> demands = new ArrayList<>();
+        synchronized (this) {
+            for (Flight flight : call.flights) {
+                demands.addAll(flight.demands);
+            }
+        }
+        int n = demands.size();
+        for (int i = 0; i < n; i++) {
+            // The first demand also takes the remainder, so the shares add up to what the provider reported
+            int promptShare = promptTokens / n + (i == 0 ? promptTokens % n : 0);
+            int completionShare = completionTokens / n + (i == 0 ? completionTokens % n : 0);
+            demands.get(i).onUsage.onUsage(promptShare, completionShare);
+        }
+    }
+
+    private void complete(Call call, ModelRouter.Route route, DifficultyLevel difficulty, String response, Throwable error) {
+        List<List<Demand>> demands = new ArrayList<>();
+        synchronized (this) {
+            // Demands arriving from now on start a new flight
+            for (Flight flight : call.flights) {
+                flights.remove(flight.key, flight);
+                demands.add(new ArrayList<>(flight.demands));
+            }
+        }
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            for (List<Demand> flightDemands : demands) {
+                fail(flightDemands, cause);
+            }
+            return;
+        }
+
+        // Blocks are matched to topics by the number the model echoed, never by position, so a dropped or
+        // reordered question cannot shift later ones onto the wrong topic
+        Map<Integer, String> blocks = call.flights.size() == 1 ? Map.of(0, response)
+            : QuestionGenerator.splitNumberedBlocks(response, call.flights.size());
+        int parsed = 0;
+        for (int i = 0; i < call.flights.size(); i++) {
+            String topic = call.flights.get(i).key.topic;
+            String block = blocks.get(i);
+            try {
+                if (block == null) {
+                    throw new QuestionGenerator.ResponseParseException("Failed to parse AI response: No question for topic "
+                        + (i + 1) + " (" + topic + ")", response, null);
+                }
+                Question question = QuestionGenerator.parseResponse(block).withTopic(topic);
+                parsed++;
+                if (!generatedQuestions.addIfNovel(question)) {
+                    QuizMetrics.recordDuplicateRejected();
+                    throw new QuestionGenerator.DuplicateQuestionException(
+                        "Generated question is a near-duplicate of an earlier one", block);
+                }
+                storeInBank(topic, difficulty, question);
+                for (Demand demand : demands.get(i)) {
+                    demand.future.complete(question);
+                }
+            } catch (QuestionGenerator.ResponseParseException e) {
+                fail(demands.get(i), e);
+            }
+        }
+        route.recordParseResults(parsed, call.flights.size());
+    }
+
+    private static void fail(List<Demand> demands, Throwable error) {
+        for (Demand demand : demands) {
+            demand.future.completeExceptionally(error);
+        }
+    }
+
+    private void storeInBank(String topic, DifficultyLevel difficulty, Question question) {
+        if (questionBank == null) {
+            return;
+        }
+        try {
+            questionBank.add(topic, difficulty, question);
+        } catch (IOException e) {
+            System.out.println("Failed to store question in bank: " + e.getMessage());
+        }
+    }
+
+    private synchronized void withdraw(Flight flight) {
+        if (!flight.isAbandoned()) {
+            return;
+        }
+        flights.remove(flight.key, flight);
+        if (flight.call == null) {
+            waiting.remove(flight);
+        } else {
+            cancelIfAbandoned(flight.call);
+        }
+    }
+
+    private void cancelIfAbandoned(Call call) {
+        if (call.request == null || call.request.isDone()) {
+            return;
+        }
+        for (Flight flight : call.flights) {
+            if (!flight.isAbandoned()) {
+                return;
+            }
+        }
+        call.request.cancel(true);
+    }
+
+    private static class Key {
+        private final DifficultyLevel difficulty;
+        private final String topic;
+        private final int escalation;
+
+        Key(DifficultyLevel difficulty, String topic, int escalation) {
+            this.difficulty = difficulty;
+            this.topic = topic;
+            this.escalation = escalation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return difficulty == other.difficulty && escalation == other.escalation && Objects.equals(topic, other.topic);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(difficulty, topic, escalation);
+        }
+    }
+
+    // The sessions waiting on one question; guarded by the coalescer
+    private static class Flight {
+        private final Key key;
+        private final List<Demand> demands = new ArrayList<>();
+        private int attempt = 1;
+        private String partial = "";
+        private Call call;
+
+        Flight(Key key) {
+            this.key = key;
+        }
+
+        boolean isAbandoned() {
+            for (Demand demand : demands) {
+                if (!demand.future.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int priority() {
+            int best = RequestScheduler.Priority.BULK.ordinal();
+            for (Demand demand : demands) {
+                best = Math.min(best, demand.ticket.getPriority().ordinal());
+            }
+            return best;
+        }
+    }
+
+    // One chat completion answering several flights, in prompt order
+    private static class Call {
+        private final List<Flight> flights;
+        private final RequestScheduler.Ticket ticket;
+        private CompletableFuture<String> request;
+
+        Call(List<Flight> flights, RequestScheduler.Ticket ticket) {
+            this.flights = flights;
+            this.ticket = ticket;
+        }
+    }
+
+    private static class Demand {
+        private final CompletableFuture<Question> future = new CompletableFuture<>();
+        private final RequestScheduler.Ticket ticket;
+        private final Consumer<String> onPartial;
+        private final TokenUsageListener onUsage;
+
+        Demand(RequestScheduler.Ticket ticket, Consumer<String> onPartial, TokenUsageListener onUsage) {
+            this.ticket = ticket;
+            this.onPartial = onPartial;
+            this.onUsage = onUsage;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.quiz;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Paces the chat completion requests made with one API key. A token bucket refills at the current rate,
+// and every HTTP attempt (retries included) waits for a token. Waiting requests are served strictly by
+// priority class, and within a class by start-time fair queuing over sessions, so one session's burst of
+// prefetches cannot starve another's. Background classes also leave a reserve of tokens untouched, so a
+// user-blocking request never waits behind background work. The rate adapts: a 429 halves it and holds
+// every request until Retry-After has passed, and each success wins a little of it back.
+// Configured with -Dquiz.rate.requestsPerSecond, -Dquiz.rate.burst and -Dquiz.rate.interactiveReserve.
+public class RequestScheduler {
+    public enum Priority { USER_BLOCKING, PREFETCH, BULK }
+
+    private static final double DEFAULT_REQUESTS_PER_SECOND = Double.parseDouble(
+        System.getProperty("quiz.rate.requestsPerSecond", "2"));
+    private static final int DEFAULT_BURST = Integer.getInteger("quiz.rate.burst", 4);
+    private static final int DEFAULT_INTERACTIVE_RESERVE = Integer.getInteger("quiz.rate.interactiveReserve", 1);
+    // Additive increase per success as a share of the configured rate, multiplicative decrease per 429
+    private static final double RECOVERY_STEP = 0.05;
+    private static final double BACKOFF_FACTOR = 0.5;
+    private static final double MIN_REQUESTS_PER_SECOND = 0.05;
+    // 429s from requests that were already in flight together only count as one
+    private static final long BACKOFF_HOLD_MILLIS = 1_000;
+    private static final long MAX_PAUSE_MILLIS = 30_000;
+
+    private static final Map<String, RequestScheduler> schedulers = new HashMap<>();
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "request-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final double maxRate;
+    private final int burst;
+    private final int interactiveReserve;
+    private double rate;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private long pausedUntil = 0;
+    private long lastBackoff = 0;
+    private long sequence = 0;
+    private final List<Waiter> waiting = new ArrayList<>();
+    // Per priority class: the virtual time, and each flow's last finish tag
+    private final double[] virtualTime = new double[Priority.values().length];
+    private final Map<Object, double[]> lastFinish = new HashMap<>();
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAt;
+    private long rateLimited = 0;
+
+    // A rate of 0 or less disables pacing, though priorities and Retry-After pauses still apply
+    public RequestScheduler(double requestsPerSecond, int burst, int interactiveReserve) {
+        this.maxRate = requestsPerSecond;
+        this.rate = requestsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.interactiveReserve = Math.max(0, Math.min(interactiveReserve, this.burst - 1));
+        this.tokens = this.burst;
+    }
+
+    public static synchronized RequestScheduler forApiKey(String apiKey) {
+        return schedulers.computeIfAbsent(apiKey, key -> new RequestScheduler(DEFAULT_REQUESTS_PER_SECOND,
+            DEFAULT_BURST, DEFAULT_INTERACTIVE_RESERVE));
+    }
+
+    // Completes once the request may be sent. Cancelling the future gives up its place in the queue.
+    public CompletableFuture<Void> acquire(Ticket ticket) {
+        Waiter waiter = new Waiter(ticket);
+        synchronized (this) {
+            waiting.add(waiter);
+            ticket.queuedIn = this;
+        }
+        waiter.future.whenComplete((ignored, error) -> {
+            if (waiter.future.isCancelled()) {
+                synchronized (this) {
+                    if (waiting.remove(waiter)) {
+                        untag(waiter);
+                    }
+                }
+            }
+        });
+        dispatch();
+        return waiter.future;
+    }
+
+    public synchronized void recordSuccess() {
+        if (maxRate > 0) {
+            rate = Math.min(maxRate, rate + maxRate * RECOVERY_STEP);
+        }
+    }
+
+    // The provider answered 429; retryAfterMillis is its Retry-After, or -1 if it sent none
+    public synchronized void recordRateLimited(long retryAfterMillis) {
+        QuizMetrics.recordRateLimited();
+        rateLimited++;
+        long now = System.currentTimeMillis();
+        if (maxRate > 0 && now - lastBackoff >= BACKOFF_HOLD_MILLIS) {
+            rate = Math.max(MIN_REQUESTS_PER_SECOND, rate * BACKOFF_FACTOR);
+            lastBackoff = now;
+        }
+        tokens = 0;
+        if (retryAfterMillis > 0) {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(Math.min(retryAfterMillis, MAX_PAUSE_MILLIS)));
+        }
+    }
+
+    // Hands out tokens to waiting requests, best first, and sets a timer for when the next one is due
+    private void dispatch() {
+        List<Waiter> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            refill(now);
+            while (!waiting.isEmpty()) {
+                if (now < pausedUntil) {
+                    scheduleWakeup(pausedUntil);
+                    break;
+                }
+                Waiter next = best();
+                double needed = next.tagPriority == Priority.USER_BLOCKING ? 1 : 1 + interactiveReserve;
+                if (maxRate > 0 && tokens < needed) {
+                    double rate = Math.max(MIN_REQUESTS_PER_SECOND, this.rate);
+                    scheduleWakeup(now + (long) Math.ceil((needed - tokens) / rate * 1e9));
+                    break;
+                }
+                waiting.remove(next);
+                if (maxRate > 0) {
+                    tokens -= 1;
+                }
+                int c = next.tagPriority.ordinal();
+                virtualTime[c] = Math.max(virtualTime[c], next.startTag);
+                next.ticket.queuedIn = null;
+                ready.add(next);
+            }
+            if (!ready.isEmpty()) {
+                forgetIdleFlows();
+            }
+        }
+        for (Waiter waiter : ready) {
+            if (waiter.future.complete(null)) {
+                (waiter.tagPriority == Priority.USER_BLOCKING ? QuizMetrics.SCHEDULER_WAIT_INTERACTIVE
+                    : QuizMetrics.SCHEDULER_WAIT_BACKGROUND).recordSince(waiter.enqueuedAt);
+            }
+        }
+    }
+
+    private void refill(long now) {
+        if (maxRate > 0) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * rate);
+        }
+        refilledAt = now;
+    }
+
+    // Highest priority class first; within it the smallest start tag, then the earliest arrival
+    private Waiter best() {
+        Waiter best = null;
+        for (Waiter waiter : waiting) {
+            if (waiter.tagPriority != waiter.ticket.getPriority()) {
+                untag(waiter);
+                tag(waiter);
+            }
+            if (best == null || waiter.tagPriority.ordinal() < best.tagPriority.ordinal()
+                    || (waiter.tagPriority == best.tagPriority && (waiter.startTag < best.startTag
+                    || (waiter.startTag == best.startTag && waiter.sequence < best.sequence)))) {
+                best = waiter;
+            }
+        }
+        return best;
+    }
+
+    // Start-time fair queuing: a request starts at the later of the class's virtual time and the end of
+    // its flow's previous request, and each request takes 1/weight of virtual time
+    private void tag(Waiter waiter) {
+        Priority priority = waiter.ticket.getPriority();
+        int c = priority.ordinal();
+        double[] finishes = lastFinish.computeIfAbsent(waiter.flow, f -> new double[virtualTime.length]);
+        waiter.tagPriority = priority;
+        waiter.startTag = Math.max(virtualTime[c], finishes[c]);
+        finishes[c] = waiter.startTag + 1.0 / waiter.ticket.weight;
+    }
+
+    // Gives back the virtual time a request took in its class when it leaves that class without being sent,
+    // after a promotion or a cancellation, so its flow is not charged for a request that never ran there
+    private void untag(Waiter waiter) {
+        double[] finishes = lastFinish.get(waiter.flow);
+        if (finishes != null) {
+            int c = waiter.tagPriority.ordinal();
+            finishes[c] = Math.max(virtualTime[c], finishes[c] - 1.0 / waiter.ticket.weight);
+        }
+    }
+
+    // A flow whose requests all end before the virtual time would start from the virtual time anyway, so
+    // it can be forgotten; a flow still waiting always has a finish tag ahead of it
+    private void forgetIdleFlows() {
+        lastFinish.values().removeIf(finishes -> {
+            for (int c = 0; c < finishes.length; c++) {
+                if (finishes[c] > virtualTime[c]) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private void scheduleWakeup(long at) {
+        if (wakeup != null && !wakeup.isDone() && wakeupAt <= at) {
+            return;
+        }
+        if (wakeup != null) {
+            wakeup.cancel(false);
+        }
+        wakeupAt = at;
+        wakeup = timer.schedule(this::wake, Math.max(0, at - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    private void wake() {
+        // The running wakeup is not done yet, so forget it or dispatch could not set the next one
+        synchronized (this) {
+            wakeup = null;
+        }
+        dispatch();
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized int getQueued() {
+        return waiting.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long pause = TimeUnit.NANOSECONDS.toMillis(pausedUntil - System.nanoTime());
+        return String.format("%.2f requests/s, %d queued, %d rate limited%s", rate, waiting.size(), rateLimited,
+            pause > 0 ? ", paused for " + pause + " ms" : "");
+    }
+
+    // Who a request is for and how urgent it is. Requests of the same flow (a quiz session) share that
+    // flow's fair share. The priority can be raised while the request waits, for instance when the user
+    // reaches a question that was only being prefetched; followers are raised along with it.
+    public static class Ticket {
+        private final Object flow;
+        private final double weight;
+        private volatile Priority priority;
+        private final List<Ticket> followers = new CopyOnWriteArrayList<>();
+        private volatile RequestScheduler queuedIn;
+
+        public Ticket(Object flow, Priority priority) {
+            this(flow, 1.0, priority);
+        }
+
+        // flow may be null for a request that belongs to no session; weight scales the flow's share
+        public Ticket(Object flow, double weight, Priority priority) {
+            this.flow = flow != null ? flow : this;
+            this.weight = weight > 0 ? weight : 1.0;
+            this.priority = priority;
+        }
+
+        public Object getFlow() {
+            return flow;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public void promote(Priority to) {
+            synchronized (this) {
+                if (to.ordinal() >= priority.ordinal()) {
+                    return;
+                }
+                priority = to;
+            }
+            RequestScheduler scheduler = queuedIn;
+            if (scheduler != null) {
+                scheduler.dispatch();
+            }
+            for (Ticket follower : followers) {
+                follower.promote(to);
+            }
+        }
+
+        // The follower is raised to this ticket's priority now and whenever this ticket is promoted
+        public void addFollower(Ticket follower) {
+            followers.add(follower);
+            follower.promote(priority);
+        }
+    }
+
+    private class Waiter {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final Ticket ticket;
+        private final Object flow;
+        private final long sequence;
+        private final long enqueuedAt = System.nanoTime();
+        private Priority tagPriority;
+        private double startTag;
+
+        Waiter(Ticket ticket) {
+            this.ticket = ticket;
+            this.flow = ticket.flow;
+            synchronized (RequestScheduler.this) {
+                this.sequence = RequestScheduler.this.sequence++;
+                tag(this);
+            }
+        }
+    }
+}
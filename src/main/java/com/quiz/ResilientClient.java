@@ -0,0 +1,360 @@
+package com.quiz;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Resilience layer around OpenRouterClient: retries transient failures with exponential backoff and
+// full jitter, bounds each call by a deadline derived from recent latency, and stops calling the backend
+// through a circuit breaker while it keeps failing. Every attempt first waits its turn in the API key's
+// RequestScheduler, which is also told about 429s; a rate-limited attempt is re-queued straight away,
+// since the scheduler already holds all requests until Retry-After has passed. A slow attempt may be
+// hedged with a second, identical request, which waits for its own token and breaker permit like any
+// other. Clients for the same backend should share the breaker, so the single-argument constructor
+// uses a process-wide one.
+public class ResilientClient implements LlmBackend {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 8_000;
+    private static final long MAX_RETRY_AFTER_MILLIS = 30_000;
+    // Deadlines are a multiple of the recent p99, kept within sane bounds
+    private static final double DEADLINE_FACTOR = 3.0;
+    private static final long MIN_DEADLINE_MILLIS = 15_000;
+    private static final long MAX_DEADLINE_MILLIS = 120_000;
+    private static final int MIN_DEADLINE_SAMPLES = 10;
+
+    private static final CircuitBreaker sharedBreaker = newBreaker();
+    private static final LatencyTracker sharedCallLatency = new LatencyTracker(200);
+    // Fires both retries and hedges
+    private static final ScheduledExecutorService retryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "openrouter-retry-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+    private final OpenRouterClient client;
+    private final CircuitBreaker breaker;
+    private final LatencyTracker callLatency;
+    private final RequestScheduler scheduler;
+    private volatile HedgingPolicy hedgingPolicy = HedgingPolicy.getDefault();
+
+    public ResilientClient(OpenRouterClient client) {
+        this("default", client, sharedBreaker, sharedCallLatency);
+    }
+
+    public ResilientClient(String name, OpenRouterClient client, CircuitBreaker breaker, LatencyTracker callLatency) {
+        this(name, client, breaker, callLatency, RequestScheduler.forApiKey(client.getApiKey()));
+    }
+
+    public ResilientClient(String name, OpenRouterClient client, CircuitBreaker breaker, LatencyTracker callLatency,
+                           RequestScheduler scheduler) {
+        this.name = name;
+        this.client = client;
+        this.breaker = breaker;
+        this.callLatency = callLatency;
+        this.scheduler = scheduler;
+    }
+
+    static CircuitBreaker newBreaker() {
+        return new CircuitBreaker(5, 30_000);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    // Replaces the hedging policy; null turns hedging off
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    // Same contract as OpenRouterClient.streamChatCompletionAsync. A failed attempt is only retried
+    // if it had not streamed any tokens yet, so the caller never sees the same text twice. A null
+    // ticket makes the call a prefetch of its own.
+    @Override
+    public CompletableFuture<String> streamChatCompletionAsync(ChatPrompt prompt, RequestScheduler.Ticket ticket,
+                                                               Consumer<String> onToken, TokenUsageListener onUsage) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        RequestScheduler.Ticket scheduled = ticket != null ? ticket
+            : new RequestScheduler.Ticket(null, RequestScheduler.Priority.PREFETCH);
+        attempt(result, prompt, scheduled, onToken, onUsage, 1);
+        return result;
+    }
+
+    private void attempt(CompletableFuture<String> result, ChatPrompt prompt, RequestScheduler.Ticket ticket,
+                         Consumer<String> onToken, TokenUsageListener onUsage, int attempt) {
+        if (result.isDone()) {
+            return;
+        }
+        // Fail fast rather than queue for a backend that is known to be down
+        if (!breaker.isAvailable()) {
+            result.completeExceptionally(new CircuitBreaker.OpenException());
+            return;
+        }
+        CompletableFuture<Void> permit = scheduler.acquire(ticket);
+        result.whenComplete((content, error) -> {
+            if (result.isCancelled()) {
+                permit.cancel(true);
+            }
+        });
+        permit.thenRun(() -> send(result, prompt, ticket, onToken, onUsage, attempt));
+    }
+
+    private void send(CompletableFuture<String> result, ChatPrompt prompt, RequestScheduler.Ticket ticket,
+                      Consumer<String> onToken, TokenUsageListener onUsage, int attempt) {
+        if (result.isDone()) {
+            return;
+        }
+        if (!breaker.allowRequest()) {
+            result.completeExceptionally(new CircuitBreaker.OpenException());
+            return;
+        }
+
+        AtomicBoolean streamed = new AtomicBoolean(false);
+        long start = System.nanoTime();
+        HedgedCall hedged = new HedgedCall(hedgingPolicy, prompt, ticket, token -> {
+            streamed.set(true);
+            onToken.accept(token);
+        }, onUsage, deadlineMillis());
+        CompletableFuture<String> call = hedged.result;
+        result.whenComplete((content, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        hedged.start();
+
+        call.whenComplete((content, error) -> {
+            if (error == null) {
+                breaker.recordSuccess();
+                scheduler.recordSuccess();
+                callLatency.record(System.nanoTime() - start);
+                result.complete(content);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException || result.isDone()) {
+                breaker.recordCancelled();
+                return;
+            }
+
+            // The scheduler has already been told, by the attempt that got the 429
+            boolean rateLimited = isRateLimited(cause);
+            boolean retryable = isRetryable(cause);
+            if (retryable) {
+                breaker.recordFailure();
+            } else {
+                breaker.recordCancelled();
+            }
+            if (!retryable || streamed.get() || attempt >= MAX_ATTEMPTS) {
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            long delay = rateLimited ? 0 : backoffMillis(attempt, cause);
+            QuizMetrics.recordRetry();
+            retryTimer.schedule(() -> attempt(result, prompt, ticket, onToken, onUsage, attempt + 1), delay,
+                TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private static boolean isRateLimited(Throwable error) {
+        return error instanceof OpenRouterException && ((OpenRouterException) error).getStatusCode() == 429;
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof OpenRouterException) {
+            return ((OpenRouterException) error).isRetryable();
+        }
+        // Network failures and timeouts are transient; anything else is a bug or a bad response
+        return error instanceof IOException && !(error instanceof CircuitBreaker.OpenException);
+    }
+
+    private static long backoffMillis(int attempt, Throwable error) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempt - 1));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (error instanceof OpenRouterException) {
+            long retryAfter = ((OpenRouterException) error).getRetryAfterMillis();
+            if (retryAfter > delay) {
+                delay = Math.min(retryAfter, MAX_RETRY_AFTER_MILLIS);
+            }
+        }
+        return delay;
+    }
+
+    private long deadlineMillis() {
+        if (callLatency.size() < MIN_DEADLINE_SAMPLES) {
+            return MAX_DEADLINE_MILLIS;
+        }
+        long p99Millis = TimeUnit.NANOSECONDS.toMillis(callLatency.percentile(0.99));
+        return Math.max(MIN_DEADLINE_MILLIS, Math.min(MAX_DEADLINE_MILLIS, (long) (p99Millis * DEADLINE_FACTOR)));
+    }
+
+    // Up to two identical streams racing each other, won by the first to produce a token, so only one
+    // attempt's tokens are ever passed on. The losing attempt is cancelled as soon as there is a winner.
+    // The first attempt has already been given its token and breaker permit; a hedge queues for a token
+    // of its own and is dropped if the breaker will not let it through.
+    private class HedgedCall {
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final HedgingPolicy policy;
+        private final ChatPrompt prompt;
+        private final RequestScheduler.Ticket ticket;
+        private final Consumer<String> onToken;
+        private final TokenUsageListener onUsage;
+        private final long timeoutMillis;
+        private final long start = System.nanoTime();
+        private final List<CompletableFuture<String>> attempts = new ArrayList<>(2);
+        private boolean hedged = false;
+        private CompletableFuture<Void> hedgePermit;
+        private int winner = -1;
+        private int failures = 0;
+
+        HedgedCall(HedgingPolicy policy, ChatPrompt prompt, RequestScheduler.Ticket ticket, Consumer<String> onToken,
+                   TokenUsageListener onUsage, long timeoutMillis) {
+            this.policy = policy;
+            this.prompt = prompt;
+            this.ticket = ticket;
+            this.onToken = onToken;
+            this.onUsage = onUsage;
+            this.timeoutMillis = timeoutMillis;
+            result.whenComplete((content, error) -> {
+                if (result.isCancelled()) {
+                    cancelAttemptsExcept(-1);
+                } else {
+                    cancelHedgePermit();
+                }
+            });
+        }
+
+        void start() {
+            if (policy == null) {
+                launch();
+                return;
+            }
+            policy.onRequest();
+            launch();
+            long delay = policy.hedgeDelayNanos(true);
+            if (delay >= 0) {
+                ScheduledFuture<?> hedge = retryTimer.schedule(this::hedgeIfSlow, delay, TimeUnit.NANOSECONDS);
+                result.whenComplete((content, error) -> hedge.cancel(false));
+            }
+        }
+
+        private void hedgeIfSlow() {
+            synchronized (this) {
+                if (result.isDone() || winner >= 0 || hedged || !policy.tryAcquireHedge()) {
+                    return;
+                }
+                hedged = true;
+            }
+            // Acquired outside the lock, since handing out tokens may run other requests' continuations
+            CompletableFuture<Void> permit = scheduler.acquire(ticket);
+            synchronized (this) {
+                hedgePermit = permit;
+            }
+            if (result.isDone()) {
+                permit.cancel(true);
+                return;
+            }
+            permit.thenRun(() -> {
+                synchronized (this) {
+                    if (result.isDone() || winner >= 0) {
+                        return;
+                    }
+                }
+                if (breaker.allowRequest()) {
+                    launch();
+                }
+            });
+        }
+
+        private void launch() {
+            int id;
+            synchronized (this) {
+                id = attempts.size();
+                attempts.add(null);
+            }
+            // Every attempt that completes has cost tokens, so usage is passed on for the loser too
+            CompletableFuture<String> attempt = client.streamChatCompletionAsync(prompt, token -> {
+                if (claim(id)) {
+                    onToken.accept(token);
+                }
+            }, onUsage, timeoutMillis);
+            synchronized (this) {
+                attempts.set(id, attempt);
+                if (result.isDone() || (winner >= 0 && winner != id)) {
+                    attempt.cancel(true);
+                }
+            }
+            attempt.whenComplete((content, error) -> onAttemptDone(id, content, error));
+        }
+
+        private synchronized boolean claim(int id) {
+            if (winner < 0) {
+                winner = id;
+                if (policy != null) {
+                    policy.recordLatency(true, System.nanoTime() - start);
+                    if (id > 0) {
+                        policy.onHedgeWon();
+                    }
+                }
+                cancelAttemptsExcept(id);
+            }
+            return winner == id;
+        }
+
+        private void onAttemptDone(int id, String content, Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (isRateLimited(cause)) {
+                scheduler.recordRateLimited(((OpenRouterException) cause).getRetryAfterMillis());
+            }
+            synchronized (this) {
+                if (error == null) {
+                    if (claim(id)) {
+                        result.complete(content);
+                    }
+                    return;
+                }
+                failures++;
+                // Fail only when the winning stream broke or no other attempt is still running
+                if (winner != id && (winner >= 0 || failures < attempts.size())) {
+                    return;
+                }
+            }
+            result.completeExceptionally(cause);
+        }
+
+        // A hedge still waiting for its token gives up its place in the queue
+        private synchronized void cancelHedgePermit() {
+            if (hedgePermit != null) {
+                hedgePermit.cancel(true);
+            }
+        }
+
+        private synchronized void cancelAttemptsExcept(int id) {
+            cancelHedgePermit();
+            for (int i = 0; i < attempts.size(); i++) {
+                CompletableFuture<String> attempt = attempts.get(i);
+                if (i != id && attempt != null) {
+                    attempt.cancel(true);
+                }
+            }
+        }
+    }
+}
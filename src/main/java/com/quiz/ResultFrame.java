@@ -1,11 +1,27 @@
 package com.quiz;
 
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableCellRenderer;
 import java.awt.*;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
 
 public class ResultFrame extends JFrame {
-    public ResultFrame(String userName, int score, int totalQuestions, List<Question> questions, List<Integer> userAnswers) {
+    // Shared by every row and every results window instead of being created per label
+    private static final Font ROW_HEADER_FONT = new Font("Arial", Font.BOLD, 16);
+    private static final Font ROW_TEXT_FONT = new Font("Arial", Font.PLAIN, 14);
+    private static final Font ROW_RESULT_FONT = new Font("Arial", Font.BOLD, 14);
+    private static final Color CORRECT_COLOR = new Color(0, 150, 0);
+    private static final Color INCORRECT_COLOR = new Color(200, 0, 0);
+    // The old translucent white panel as it looked over the gradient, made opaque so scrolling can blit
+    private static final Color REVIEW_BACKGROUND = new Color(224, 236, 249);
+    private static final Color SEPARATOR_COLOR = new Color(200, 200, 200);
+
+    // weightedScore and topicBreakdown come from the session's ScoreCard
+    public ResultFrame(String userName, int score, int totalQuestions, List<Question> questions, List<Integer> userAnswers,
+                       double weightedScore, double maxWeightedScore, Map<String, int[]> topicBreakdown) {
         setTitle("Quiz Results");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         // Set to full screen size
@@ -14,21 +30,7 @@ public class ResultFrame extends JFrame {
         setLocationRelativeTo(null);
 
         // Main Panel with gradient background
-        JPanel mainPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-                int w = getWidth();
-                int h = getHeight();
-                Color color1 = new Color(25, 118, 210);
-                Color color2 = new Color(25, 118, 210, 150);
-                GradientPaint gp = new GradientPaint(0, 0, color1, w, h, color2);
-                g2d.setPaint(gp);
-                g2d.fillRect(0, 0, w, h);
-            }
-        };
+        JPanel mainPanel = new GradientPanel();
         mainPanel.setLayout(new BorderLayout(20, 20));
         mainPanel.setBorder(BorderFactory.createEmptyBorder(40, 40, 40, 40));
 
@@ -69,68 +71,49 @@ public class ResultFrame extends JFrame {
 
         headerPanel.add(scorePanel);
 
-        // Question Review Panel with white semi-transparent background
-        JPanel reviewPanel = new JPanel();
-        reviewPanel.setLayout(new BoxLayout(reviewPanel, BoxLayout.Y_AXIS));
-        reviewPanel.setBackground(new Color(255, 255, 255, 220));
-        reviewPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
-
-        // Add each question and its result
-        for (int i = 0; i < questions.size(); i++) {
-            Question question = questions.get(i);
-            int userAnswer = userAnswers.get(i);
-            boolean isCorrect = userAnswer == question.getCorrectOptionIndex();
-
-            JPanel questionPanel = new JPanel();
-            questionPanel.setLayout(new BoxLayout(questionPanel, BoxLayout.Y_AXIS));
-            questionPanel.setBackground(null);
-            questionPanel.setBorder(BorderFactory.createEmptyBorder(10, 0, 20, 0));
-
-            // Question Header
-            JLabel questionHeader = new JLabel("Question " + (i + 1) + ":");
-            questionHeader.setFont(new Font("Arial", Font.BOLD, 16));
-            questionPanel.add(questionHeader);
-
-            // Question Text
-            JLabel questionText = new JLabel(question.getQuestionText());
-            questionText.setFont(new Font("Arial", Font.PLAIN, 14));
-            questionPanel.add(questionText);
-            questionPanel.add(Box.createVerticalStrut(10));
-
-            // Options
-            String[] options = question.getOptions();
-            for (int j = 0; j < options.length; j++) {
-                String prefix = (j == question.getCorrectOptionIndex()) ? "✓ " :
-                              (j == userAnswer) ? "✗ " : "  ";
-                JLabel optionLabel = new JLabel(prefix + (char)('A' + j) + ") " + options[j]);
-                optionLabel.setFont(new Font("Arial", Font.PLAIN, 14));
-                if (j == question.getCorrectOptionIndex()) {
-                    optionLabel.setForeground(new Color(0, 150, 0));
-                } else if (j == userAnswer && userAnswer != -1) {
-                    optionLabel.setForeground(new Color(200, 0, 0));
-                }
-                questionPanel.add(optionLabel);
-            }
+        // Harder questions and quicker answers earn more of the weighted score
+        JLabel weightedLabel = new JLabel(String.format("Weighted Score: %.1f / %.1f", weightedScore, maxWeightedScore));
+        weightedLabel.setFont(new Font("Arial", Font.BOLD, 18));
+        weightedLabel.setForeground(Color.WHITE);
+        weightedLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        headerPanel.add(weightedLabel);
 
-            // Result Status
-            String resultText = userAnswer == -1 ? "Not attempted" :
-                              isCorrect ? "Correct!" : "Incorrect";
-            JLabel resultLabel = new JLabel(resultText);
-            resultLabel.setFont(new Font("Arial", Font.BOLD, 14));
-            resultLabel.setForeground(userAnswer == -1 ? Color.GRAY :
-                                    isCorrect ? new Color(0, 150, 0) : new Color(200, 0, 0));
-            questionPanel.add(Box.createVerticalStrut(5));
-            questionPanel.add(resultLabel);
-
-            reviewPanel.add(questionPanel);
-            if (i < questions.size() - 1) {
-                reviewPanel.add(new JSeparator());
+        if (!topicBreakdown.isEmpty()) {
+            StringBuilder topics = new StringBuilder();
+            for (Map.Entry<String, int[]> topic : topicBreakdown.entrySet()) {
+                if (topics.length() > 0) {
+                    topics.append(" &nbsp;&middot;&nbsp; ");
+                }
+                topics.append(topic.getKey()).append(": ").append(topic.getValue()[0]).append('/').append(topic.getValue()[1]);
             }
+            JLabel topicLabel = new JLabel("<html><body style='width: 800px; text-align: center'>" + topics + "</body></html>");
+            topicLabel.setFont(ROW_TEXT_FONT);
+            topicLabel.setForeground(Color.WHITE);
+            topicLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            headerPanel.add(Box.createVerticalStrut(10));
+            headerPanel.add(topicLabel);
         }
 
+        // Question review: a single-column table renders only the rows in view, through one reused
+        // renderer. Rows start at an estimated height and are measured once they scroll into view, so
+        // opening and scrolling cost the same however long the quiz was; never while painting.
+        JTable reviewTable = new JTable(new ReviewTableModel(questions, userAnswers));
+        reviewTable.setTableHeader(null);
+        reviewTable.setShowGrid(false);
+        reviewTable.setIntercellSpacing(new Dimension(0, 0));
+        reviewTable.setRowSelectionAllowed(false);
+        reviewTable.setFocusable(false);
+        reviewTable.setBackground(REVIEW_BACKGROUND);
+        reviewTable.setRowHeight(ReviewRenderer.ESTIMATED_ROW_HEIGHT);
+        ReviewRenderer reviewRenderer = new ReviewRenderer(questions, userAnswers);
+        reviewTable.setDefaultRenderer(Object.class, reviewRenderer);
+
         // Scroll Pane for Review
-        JScrollPane scrollPane = new JScrollPane(reviewPanel);
+        JScrollPane scrollPane = new JScrollPane(reviewTable);
+        JViewport viewport = scrollPane.getViewport();
+        viewport.addChangeListener(e -> reviewRenderer.measureVisibleRows(reviewTable, viewport.getViewRect()));
         scrollPane.setBorder(BorderFactory.createLineBorder(Color.WHITE));
+        scrollPane.getViewport().setBackground(REVIEW_BACKGROUND);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
 
         // Try Again Button
@@ -174,4 +157,150 @@ public class ResultFrame extends JFrame {
 
         add(mainPanel);
     }
-}
\ No newline at end of file
+
+    private static class ReviewTableModel extends AbstractTableModel {
+        private final int rowCount;
+
+        ReviewTableModel(List<Question> questions, List<Integer> userAnswers) {
+            this.rowCount = Math.min(questions.size(), userAnswers.size());
+        }
+
+        @Override
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 1;
+        }
+
+        // The renderer looks rows up by index, so there is no per-row value to build
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            return null;
+        }
+    }
+
+    // One panel of labels, refilled for each row as it is painted
+    private static class ReviewRenderer extends JPanel implements TableCellRenderer {
+        static final int ESTIMATED_ROW_HEIGHT = 190;
+
+        private final List<Question> questions;
+        private final List<Integer> userAnswers;
+        private final JLabel headerLabel = new JLabel();
+        private final JTextArea questionText = new JTextArea();
+        private final JLabel[] optionLabels = new JLabel[4];
+        private final JLabel resultLabel = new JLabel();
+        // Rows sized at measuredWidth
+        private final BitSet measured = new BitSet();
+        private int measuredWidth = -1;
+
+        ReviewRenderer(List<Question> questions, List<Integer> userAnswers) {
+            this.questions = questions;
+            this.userAnswers = userAnswers;
+            setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+            setOpaque(false);
+            setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createMatteBorder(0, 0, 1, 0, SEPARATOR_COLOR),
+                BorderFactory.createEmptyBorder(10, 20, 20, 20)));
+
+            headerLabel.setFont(ROW_HEADER_FONT);
+            headerLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+            add(headerLabel);
+
+            // Wraps long questions to the table width instead of running off the side
+            questionText.setFont(ROW_TEXT_FONT);
+            questionText.setLineWrap(true);
+            questionText.setWrapStyleWord(true);
+            questionText.setOpaque(false);
+            questionText.setEditable(false);
+            questionText.setBorder(null);
+            questionText.setAlignmentX(Component.LEFT_ALIGNMENT);
+            add(questionText);
+            add(Box.createVerticalStrut(10));
+
+            for (int j = 0; j < optionLabels.length; j++) {
+                optionLabels[j] = new JLabel();
+                optionLabels[j].setFont(ROW_TEXT_FONT);
+                optionLabels[j].setAlignmentX(Component.LEFT_ALIGNMENT);
+                add(optionLabels[j]);
+            }
+
+            resultLabel.setFont(ROW_RESULT_FONT);
+            resultLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+            add(Box.createVerticalStrut(5));
+            add(resultLabel);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            fill(row);
+            return this;
+        }
+
+        // Sizes the rows in view that have not been measured at the current width. A change of width
+        // changes the wrapping, so every row goes back to the estimate and is measured again when seen.
+        void measureVisibleRows(JTable table, Rectangle view) {
+            int width = table.getWidth();
+            if (width <= 0 || table.getRowCount() == 0) {
+                return;
+            }
+            if (width != measuredWidth) {
+                measuredWidth = width;
+                measured.clear();
+                table.setRowHeight(ESTIMATED_ROW_HEIGHT);
+            }
+            // Measured rows are usually shorter than the estimate, which can pull further rows into view
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int first = Math.max(0, table.rowAtPoint(new Point(0, view.y)));
+                int last = table.rowAtPoint(new Point(0, view.y + view.height - 1));
+                if (last < 0) {
+                    last = table.getRowCount() - 1;
+                }
+                for (int row = measured.nextClearBit(first); row <= last; row = measured.nextClearBit(row + 1)) {
+                    measured.set(row);
+                    int height = measureRow(row, width);
+                    if (table.getRowHeight(row) != height) {
+                        table.setRowHeight(row, height);
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        private int measureRow(int row, int width) {
+            fill(row);
+            Insets insets = getInsets();
+            questionText.setSize(Math.max(1, width - insets.left - insets.right), Short.MAX_VALUE);
+            setSize(width, Short.MAX_VALUE);
+            // The layout caches its sizes, so it has to be told the text changed
+            invalidate();
+            return getPreferredSize().height;
+        }
+
+        private void fill(int row) {
+            Question question = questions.get(row);
+            int userAnswer = userAnswers.get(row);
+            int correct = question.getCorrectOptionIndex();
+            boolean isCorrect = userAnswer == correct;
+
+            headerLabel.setText("Question " + (row + 1) + ":");
+            questionText.setText(question.getQuestionText());
+
+            String[] options = question.getOptions();
+            for (int j = 0; j < optionLabels.length; j++) {
+                String prefix = (j == correct) ? "✓ " : (j == userAnswer) ? "✗ " : "  ";
+                optionLabels[j].setText(prefix + (char) ('A' + j) + ") " + options[j]);
+                optionLabels[j].setForeground(j == correct ? CORRECT_COLOR
+                    : (j == userAnswer && userAnswer != -1) ? INCORRECT_COLOR : Color.BLACK);
+            }
+
+            resultLabel.setText(userAnswer == -1 ? "Not attempted" : isCorrect ? "Correct!" : "Incorrect");
+            resultLabel.setForeground(userAnswer == -1 ? Color.GRAY : isCorrect ? CORRECT_COLOR : INCORRECT_COLOR);
+        }
+    }
+}
@@ -9,10 +9,12 @@ public class RulesFrame extends JFrame {
     private JCheckBox acceptRulesCheckbox;
     private final String userName;
     private final DifficultyLevel difficulty;
+    private final QuizWarmup warmup;
 
-    public RulesFrame(String userName, DifficultyLevel difficulty) {
+    public RulesFrame(String userName, DifficultyLevel difficulty, QuizWarmup warmup) {
         this.userName = userName;
         this.difficulty = difficulty;
+        this.warmup = warmup;
         setTitle("Software Engineering Quiz - Rules");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(600, 500);
@@ -23,21 +25,7 @@ public class RulesFrame extends JFrame {
     }
 
     private void initializeComponents() {
-        mainPanel = new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-                int w = getWidth();
-                int h = getHeight();
-                Color color1 = new Color(25, 118, 210);
-                Color color2 = new Color(25, 118, 210, 150);
-                GradientPaint gp = new GradientPaint(0, 0, color1, w, h, color2);
-                g2d.setPaint(gp);
-                g2d.fillRect(0, 0, w, h);
-            }
-        };
+        mainPanel = new GradientPanel();
         mainPanel.setLayout(null);
 
         // Welcome Label
@@ -121,7 +109,7 @@ public class RulesFrame extends JFrame {
         
         startButton.addActionListener(e -> {
             dispose();
-            new QuizFrame(userName, Constants.API_KEY, difficulty).setVisible(true);
+            new QuizFrame(userName, warmup, difficulty).setVisible(true);
         });
         
         mainPanel.add(startButton);
@@ -0,0 +1,121 @@
+package com.quiz;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Running score of one quiz session, updated in O(1) as each answer comes in. Answers, response times
+// and per-topic tallies live in primitive arrays sized once for the session, and correctness in a bit
+// set, so recording an answer allocates nothing and a result never needs a rescan of the answers.
+// Not thread-safe; QuizSession calls it under its own lock.
+public class ScoreCard {
+    // Harder questions are worth more in the weighted score
+    private static final double[] DIFFICULTY_WEIGHTS = {1.0, 1.5, 2.0};
+    // A correct answer earns up to this much extra, falling linearly to nothing at the time limit
+    private static final double MAX_TIME_BONUS = 0.5;
+
+    private final TopicCatalog catalog;
+    private final double difficultyWeight;
+    private final int timeLimitMillis;
+    private final byte[] answers;
+    private final int[] responseMillis;
+    private final long[] correctBits;
+    private final int[] topicAttempts;
+    private final int[] topicCorrect;
+    private int count = 0;
+    private int correct = 0;
+    private int answered = 0;
+    private double weightedScore = 0;
+    private long totalResponseMillis = 0;
+
+    public ScoreCard(int capacity, DifficultyLevel difficulty, int timeLimitMillis) {
+        this(capacity, difficulty, timeLimitMillis, TopicCatalog.getDefault());
+    }
+
+    public ScoreCard(int capacity, DifficultyLevel difficulty, int timeLimitMillis, TopicCatalog catalog) {
+        this.catalog = catalog;
+        this.difficultyWeight = DIFFICULTY_WEIGHTS[Math.min(difficulty.ordinal(), DIFFICULTY_WEIGHTS.length - 1)];
+        this.timeLimitMillis = timeLimitMillis;
+        this.answers = new byte[capacity];
+        this.responseMillis = new int[capacity];
+        this.correctBits = new long[(capacity + 63) >>> 6];
+        this.topicAttempts = new int[catalog.size()];
+        this.topicCorrect = new int[catalog.size()];
+    }
+
+    // answer is the chosen option or -1 for none; returns false once the card is full
+    public boolean record(Question question, int answer, int millis) {
+        if (count == answers.length) {
+            return false;
+        }
+        boolean isCorrect = question.isCorrectAnswer(answer);
+        int i = count++;
+        answers[i] = (byte) answer;
+        responseMillis[i] = millis;
+        totalResponseMillis += millis;
+        if (answer >= 0) {
+            answered++;
+        }
+        if (isCorrect) {
+            correctBits[i >>> 6] |= 1L << i;
+            correct++;
+            double remaining = Math.max(0.0, 1.0 - (double) millis / timeLimitMillis);
+            weightedScore += difficultyWeight * (1.0 + MAX_TIME_BONUS * remaining);
+        }
+        int topic = question.getTopic() != null ? catalog.indexOf(question.getTopic()) : -1;
+        if (topic >= 0) {
+            topicAttempts[topic]++;
+            if (isCorrect) {
+                topicCorrect[topic]++;
+            }
+        }
+        return true;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCorrect() {
+        return correct;
+    }
+
+    public int getAnswered() {
+        return answered;
+    }
+
+    public double getWeightedScore() {
+        return weightedScore;
+    }
+
+    // Weighted score if every question so far had been answered correctly and instantly
+    public double getMaxWeightedScore() {
+        return count * difficultyWeight * (1.0 + MAX_TIME_BONUS);
+    }
+
+    public double getMeanResponseMillis() {
+        return count == 0 ? 0.0 : (double) totalResponseMillis / count;
+    }
+
+    public int getAnswer(int index) {
+        return answers[index];
+    }
+
+    public boolean isCorrect(int index) {
+        return (correctBits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public int getResponseMillis(int index) {
+        return responseMillis[index];
+    }
+
+    // Correct and attempted counts per topic, in catalog order, for the topics that came up
+    public Map<String, int[]> getTopicBreakdown() {
+        Map<String, int[]> breakdown = new LinkedHashMap<>();
+        for (int t = 0; t < topicAttempts.length; t++) {
+            if (topicAttempts[t] > 0) {
+                breakdown.put(catalog.get(t), new int[] {topicCorrect[t], topicAttempts[t]});
+            }
+        }
+        return breakdown;
+    }
+}
@@ -0,0 +1,79 @@
+package com.quiz;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caps the tokens spent on chat completions. The period (0 for a session budget, the epoch day for
+// a daily one) and the tokens used in it are packed into one AtomicLong, so reserving, charging and
+// rolling over to a new day are all single compare-and-set operations.
+public class TokenBudget {
+    private static final int USAGE_BITS = 40;
+    private static final long USAGE_MASK = (1L << USAGE_BITS) - 1;
+
+    private final long limit;
+    private final boolean daily;
+    private final AtomicLong state = new AtomicLong();
+
+    private TokenBudget(long limit, boolean daily) {
+        this.limit = limit;
+        this.daily = daily;
+    }
+
+    // A limit of 0 or less means unlimited
+    public static TokenBudget perSession(long limit) {
+        return new TokenBudget(limit, false);
+    }
+
+    // Resets at local midnight; counts the tokens of this process only
+    public static TokenBudget perDay(long limit) {
+        return new TokenBudget(limit, true);
+    }
+
+    // Reserves tokens for a request if they fit in what is left of the budget
+    public boolean tryReserve(long tokens) {
+        long period = currentPeriod();
+        while (true) {
+            long current = state.get();
+            long used = usedIn(current, period);
+            if (limit > 0 && used + tokens > limit) {
+                return false;
+            }
+            if (state.compareAndSet(current, pack(period, used + tokens))) {
+                return true;
+            }
+        }
+    }
+
+    // Adds (or with a negative count, gives back) tokens regardless of the limit
+    public void charge(long tokens) {
+        long period = currentPeriod();
+        state.updateAndGet(current -> pack(period, Math.max(0, usedIn(current, period) + tokens)));
+    }
+
+    public long getUsed() {
+        return usedIn(state.get(), currentPeriod());
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    private long currentPeriod() {
+        return daily ? LocalDate.now().toEpochDay() : 0;
+    }
+
+    private static long usedIn(long packed, long period) {
+        return (packed >>> USAGE_BITS) == period ? packed & USAGE_MASK : 0;
+    }
+
+    private static long pack(long period, long used) {
+        return (period << USAGE_BITS) | Math.min(used, USAGE_MASK);
+    }
+
+    public static class ExceededException extends IOException {
+        public ExceededException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.quiz;
+
+// Receives the token counts a chat completion reports in its "usage" block
+public interface TokenUsageListener {
+    void onUsage(int promptTokens, int completionTokens);
+}
@@ -0,0 +1,67 @@
+package com.quiz;
+
+// Sizes max_tokens from the completion tokens actually used, per difficulty and request format
+// (one question or a batch). A question is six short lines, so the old fixed cap of 4000 mostly
+// gave a runaway reply room to run. Estimates are shared across sessions.
+public class TokenUsageModel {
+    private static final int DEFAULT_TOKENS_PER_QUESTION = 250;
+    private static final int MIN_TOKENS_PER_QUESTION = 100;
+    private static final int MAX_TOKENS = 4000;
+    private static final int MIN_SAMPLES = 5;
+    private static final double SMOOTHING = 0.2;
+    // Cap at the mean plus a few deviations, with headroom for preamble the model adds anyway
+    private static final double DEVIATIONS = 4.0;
+    private static final double HEADROOM = 1.25;
+    // A reply cut off at max_tokens only says the real need is higher, so it counts as this much more
+    private static final double TRUNCATED_FACTOR = 1.5;
+
+    private static final Estimate[][] estimates = new Estimate[DifficultyLevel.values().length][2];
+
+    static {
+        for (Estimate[] perFormat : estimates) {
+            perFormat[0] = new Estimate();
+            perFormat[1] = new Estimate();
+        }
+    }
+
+    private TokenUsageModel() {
+    }
+
+    public static int maxTokens(DifficultyLevel difficulty, int questions) {
+        return Math.min(MAX_TOKENS, questions * estimate(difficulty, questions).tokensPerQuestion());
+    }
+
+    // maxTokens is the cap the request was sent with; a reply that reached it was truncated
+    public static void record(DifficultyLevel difficulty, int questions, int completionTokens, int maxTokens) {
+        double tokens = completionTokens >= maxTokens ? completionTokens * TRUNCATED_FACTOR : completionTokens;
+        estimate(difficulty, questions).record(tokens / questions);
+    }
+
+    private static Estimate estimate(DifficultyLevel difficulty, int questions) {
+        return estimates[difficulty.ordinal()][questions > 1 ? 1 : 0];
+    }
+
+    private static class Estimate {
+        private double mean;
+        private double deviation;
+        private int samples;
+
+        synchronized void record(double tokens) {
+            if (samples == 0) {
+                mean = tokens;
+            } else {
+                deviation += SMOOTHING * (Math.abs(tokens - mean) - deviation);
+                mean += SMOOTHING * (tokens - mean);
+            }
+            samples++;
+        }
+
+        synchronized int tokensPerQuestion() {
+            if (samples < MIN_SAMPLES) {
+                return DEFAULT_TOKENS_PER_QUESTION;
+            }
+            int cap = (int) Math.ceil((mean + DEVIATIONS * deviation) * HEADROOM);
+            return Math.max(MIN_TOKENS_PER_QUESTION, cap);
+        }
+    }
+}
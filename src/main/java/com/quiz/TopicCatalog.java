@@ -0,0 +1,153 @@
+package com.quiz;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Immutable list of topics with relative weights, loaded from a text file of "topic | weight" lines.
+// Weighted draws use Vose's alias table, so picking a topic costs one random index and one random
+// double however large the catalog is. Being immutable, one catalog is shared by every session.
+public class TopicCatalog {
+    private static final String DEFAULT_RESOURCE = "/topics.txt";
+
+    private static TopicCatalog defaultCatalog;
+
+    private final String[] topics;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final double[] probability;
+    private final int[] alias;
+
+    public TopicCatalog(List<String> topics, List<Double> weights) {
+        if (topics.isEmpty() || topics.size() != weights.size()) {
+            throw new IllegalArgumentException("Topic catalog needs one weight per topic and at least one topic");
+        }
+        this.topics = topics.toArray(new String[0]);
+        for (int i = 0; i < this.topics.length; i++) {
+            indexes.putIfAbsent(this.topics[i], i);
+        }
+        this.probability = new double[this.topics.length];
+        this.alias = new int[this.topics.length];
+        buildAliasTable(weights);
+    }
+
+    // The catalog named by -Dquiz.topics.file, or the bundled one
+    public static synchronized TopicCatalog getDefault() {
+        if (defaultCatalog == null) {
+            String file = System.getProperty("quiz.topics.file");
+            try {
+                defaultCatalog = file != null ? load(Paths.get(file)) : loadResource(DEFAULT_RESOURCE);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new IllegalStateException("Failed to load topic catalog: " + e.getMessage(), e);
+            }
+        }
+        return defaultCatalog;
+    }
+
+    public static TopicCatalog load(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return load(in);
+        }
+    }
+
+    private static TopicCatalog loadResource(String name) throws IOException {
+        try (InputStream in = TopicCatalog.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + name);
+            }
+            return load(in);
+        }
+    }
+
+    // Blank lines and lines starting with '#' are ignored
+    public static TopicCatalog load(InputStream in) throws IOException {
+        List<String> topics = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int separator = line.lastIndexOf('|');
+            double weight = 1.0;
+            if (separator >= 0) {
+                try {
+                    weight = Double.parseDouble(line.substring(separator + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid weight in topic line: " + line);
+                }
+                line = line.substring(0, separator).trim();
+            }
+            if (weight > 0 && !line.isEmpty()) {
+                topics.add(line);
+                weights.add(weight);
+            }
+        }
+        return new TopicCatalog(topics, weights);
+    }
+
+    public int size() {
+        return topics.length;
+    }
+
+    public String get(int index) {
+        return topics[index];
+    }
+
+    // Index of the named topic, or -1 if it is not in the catalog
+    public int indexOf(String topic) {
+        Integer index = indexes.get(topic);
+        return index != null ? index : -1;
+    }
+
+    // Index of a topic drawn in proportion to its weight
+    public int weightedIndex() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int column = random.nextInt(topics.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    // Vose's method: split the scaled weights into columns of height 1, each holding at most two topics
+    private void buildAliasTable(List<Double> weights) {
+        int n = topics.length;
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double[] scaled = new double[n];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights.get(i) * n / total;
+            (scaled[i] < 1.0 ? small : large).push(i);
+        }
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            (scaled[more] < 1.0 ? small : large).push(more);
+        }
+        // Whatever is left is 1 up to rounding error
+        while (!large.isEmpty()) {
+            probability[large.pop()] = 1.0;
+        }
+        while (!small.isEmpty()) {
+            probability[small.pop()] = 1.0;
+        }
+    }
+}
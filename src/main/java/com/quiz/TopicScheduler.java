@@ -0,0 +1,103 @@
+package com.quiz;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Picks the topic for each question from a shared TopicCatalog. In deck mode topics are dealt without
+// replacement from a lazily shuffled deck (one Fisher-Yates step per draw), so every topic comes up
+// once before any repeats. In weighted mode they are drawn from the catalog's alias table, so heavier
+// topics come up more often. Either way a draw is O(1) and allocates nothing.
+// Each session has its own scheduler; the mode defaults to -Dquiz.topics.mode (deck or weighted).
+public class TopicScheduler {
+    public enum Mode { DECK, WEIGHTED }
+
+    // Weighted draws that hit a topic already in flight are retried a few times before accepting it
+    private static final int MAX_WEIGHTED_RETRIES = 8;
+
+    private final TopicCatalog catalog;
+    private final Mode mode;
+    // deck[0, dealt) holds the topics dealt this round; position[t] is topic t's index in deck
+    private final int[] deck;
+    private final int[] position;
+    private int dealt = 0;
+    // Topics dealt but not yet released or completed, so weighted mode can avoid asking them twice at once
+    private final boolean[] inFlight;
+
+    public TopicScheduler(TopicCatalog catalog) {
+        this(catalog, Mode.valueOf(System.getProperty("quiz.topics.mode", "deck").toUpperCase()));
+    }
+
+    public TopicScheduler(TopicCatalog catalog, Mode mode) {
+        this.catalog = catalog;
+        this.mode = mode;
+        int n = catalog.size();
+        this.deck = new int[n];
+        this.position = new int[n];
+        this.inFlight = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            deck[i] = i;
+            position[i] = i;
+        }
+    }
+
+    public synchronized String next() {
+        int topic = mode == Mode.WEIGHTED ? drawWeighted() : deal();
+        inFlight[topic] = true;
+        return catalog.get(topic);
+    }
+
+    // Puts a topic whose question failed back into play
+    public synchronized void release(String topicName) {
+        int topic = catalog.indexOf(topicName);
+        if (topic < 0) {
+            return;
+        }
+        inFlight[topic] = false;
+        if (mode == Mode.DECK && position[topic] < dealt) {
+            // Swap it to the end of the dealt region and shrink the region over it
+            swap(position[topic], --dealt);
+        }
+    }
+
+    // Called once a question for the topic has been delivered
+    public synchronized void complete(String topicName) {
+        int topic = catalog.indexOf(topicName);
+        if (topic >= 0) {
+            inFlight[topic] = false;
+        }
+    }
+
+    private int deal() {
+        if (dealt == deck.length) {
+            // Every topic has been asked; start a new round, keeping topics still in flight out of it
+            dealt = 0;
+            for (int i = 0; i < deck.length; i++) {
+                if (inFlight[deck[i]]) {
+                    swap(i, dealt++);
+                }
+            }
+            if (dealt == deck.length) {
+                dealt = 0;
+            }
+        }
+        int pick = dealt + ThreadLocalRandom.current().nextInt(deck.length - dealt);
+        swap(dealt, pick);
+        return deck[dealt++];
+    }
+
+    private int drawWeighted() {
+        int topic = catalog.weightedIndex();
+        for (int i = 0; i < MAX_WEIGHTED_RETRIES && inFlight[topic]; i++) {
+            topic = catalog.weightedIndex();
+        }
+        return topic;
+    }
+
+    private void swap(int i, int j) {
+        int a = deck[i];
+        int b = deck[j];
+        deck[i] = b;
+        deck[j] = a;
+        position[b] = i;
+        position[a] = j;
+    }
+}